@@ -0,0 +1,95 @@
+package org.compiler;
+
+/**
+ * Deterministic submissions of increasing size for the benchmarks. {@code SMALL} is a typical
+ * hello-world, {@code MEDIUM} a few hundred lines of exercise-style code and {@code LARGE} a few
+ * thousand lines, near the upper end of what users paste into the editor. Sources stay within
+ * Java 8, the level {@link CompilationManager} compiles at.
+ */
+public enum BenchmarkCorpus {
+
+    SMALL(0),
+    MEDIUM(12),
+    LARGE(160);
+
+    private final String source;
+
+    BenchmarkCorpus(int helpers) {
+        this.source = generate(helpers);
+    }
+
+    public String className() {
+        return "Main";
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public CodeSnippet snippet() {
+        return new CodeSnippet(source);
+    }
+
+    private static String generate(int helpers) {
+        var source = new StringBuilder(256 + helpers * 1_200);
+        source.append("import java.util.*;\n");
+        source.append("import java.util.stream.*;\n\n");
+        source.append("public class Main {\n\n");
+        source.append("    static final class Point {\n");
+        source.append("        final int x;\n");
+        source.append("        final int y;\n\n");
+        source.append("        Point(int x, int y) {\n");
+        source.append("            this.x = x;\n");
+        source.append("            this.y = y;\n");
+        source.append("        }\n\n");
+        source.append("        int distance(Point other) {\n");
+        source.append("            return Math.abs(x - other.x) + Math.abs(y - other.y);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+        for (int i = 0; i < helpers; i++) {
+            appendHelper(source, i);
+        }
+        source.append("    public static void main(String[] args) {\n");
+        source.append("        long total = 0;\n");
+        for (int i = 0; i < helpers; i++) {
+            source.append("        total += helper").append(i).append("(").append(i + 8).append(");\n");
+        }
+        source.append("        System.out.println(\"Hello, World! \" + total);\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static void appendHelper(StringBuilder source, int i) {
+        source.append("    /**\n");
+        source.append("     * Mixes collections, streams, string building and arithmetic like a typical exercise.\n");
+        source.append("     */\n");
+        source.append("    static long helper").append(i).append("(int n) {\n");
+        source.append("        List<Integer> values = new ArrayList<>();\n");
+        source.append("        for (int i = 0; i < n; i++) {\n");
+        source.append("            values.add((i * ").append(i + 3).append(") % 97);\n");
+        source.append("        }\n");
+        source.append("        Map<Integer, Long> counts = values.stream()\n");
+        source.append("            .collect(Collectors.groupingBy(v -> v % 7, TreeMap::new, Collectors.counting()));\n");
+        source.append("        StringBuilder text = new StringBuilder();\n");
+        source.append("        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {\n");
+        source.append("            text.append(entry.getKey()).append('=').append(entry.getValue()).append(';');\n");
+        source.append("        }\n");
+        source.append("        Point origin = new Point(0, 0);\n");
+        source.append("        long sum = 0;\n");
+        source.append("        for (int v : values) {\n");
+        source.append("            sum += new Point(v, n - v).distance(origin);\n");
+        source.append("            if (v % 2 == 0) {\n");
+        source.append("                sum ^= v << 1;\n");
+        source.append("            } else {\n");
+        source.append("                switch (v % 3) {\n");
+        source.append("                    case 0: sum += v; break;\n");
+        source.append("                    case 1: sum -= v; break;\n");
+        source.append("                    default: sum += v * 2;\n");
+        source.append("                }\n");
+        source.append("            }\n");
+        source.append("        }\n");
+        source.append("        return sum + text.length();\n");
+        source.append("    }\n\n");
+    }
+}
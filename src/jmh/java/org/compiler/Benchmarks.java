@@ -0,0 +1,45 @@
+package org.compiler;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Builds pipeline components outside CDI, with the same defaults as application.properties, so
+ * the benchmarks measure the components and not the container.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    static SourceCodeAnalyzer analyzer() {
+        return new SourceCodeAnalyzer();
+    }
+
+    static CacheManager cacheManager(long maxBytes) {
+        var offHeap = new OffHeapCache();
+        offHeap.maxBytes = 0;
+        offHeap.init();
+        var cache = new CacheManager();
+        cache.maxBytes = maxBytes;
+        cache.promoteAfter = 2;
+        cache.expireAfterAccess = Duration.ofHours(6);
+        cache.offHeapCache = offHeap;
+        cache.persistentCache = new PersistentCache();
+        cache.init();
+        return cache;
+    }
+
+    static CompilationManager compilationManager() {
+        var nameEnvironment = new SharedNameEnvironment();
+        nameEnvironment.libraries = Optional.empty();
+        nameEnvironment.onStart(null);
+        var compilationManager = new CompilationManager();
+        compilationManager.nameEnvironment = nameEnvironment;
+        return compilationManager;
+    }
+
+    static FileManager fileManager() {
+        return new FileManager();
+    }
+}
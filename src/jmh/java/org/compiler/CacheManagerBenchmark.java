@@ -0,0 +1,91 @@
+package org.compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytecode cache lookups and inserts under contention. All threads share one {@link CacheManager}
+ * filled with {@value #KEYS} bundles; the nested classes run the same benchmarks at 1, 4, 16 and
+ * 64 threads. The off-heap tier and the disk cache stay off so only the on-heap path is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public abstract class CacheManagerBenchmark {
+
+    private static final int KEYS = 1_024;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    BenchmarkCorpus corpus;
+
+    private CacheManager cacheManager;
+    private String[] keys;
+    private byte[] bundle;
+
+    @Setup
+    public void setup() {
+        var compilation = Benchmarks.compilationManager()
+                .compile(null, corpus.className(), corpus.source(), Map.of());
+        bundle = ClassBundle.pack(compilation.classes());
+        cacheManager = Benchmarks.cacheManager(2L * KEYS * bundle.length);
+        keys = new String[KEYS];
+        var random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            keys[i] = HexFormat.of().formatHex(hash);
+            cacheManager.put(keys[i], bundle);
+        }
+    }
+
+    @Benchmark
+    public Optional<byte[]> hit() {
+        return cacheManager.get(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    public Optional<byte[]> miss() {
+        return cacheManager.get(Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    }
+
+    @Benchmark
+    public void put() {
+        cacheManager.put(keys[ThreadLocalRandom.current().nextInt(KEYS)], bundle);
+    }
+
+    @Threads(1)
+    public static class Threads1 extends CacheManagerBenchmark {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends CacheManagerBenchmark {
+    }
+
+    @Threads(16)
+    public static class Threads16 extends CacheManagerBenchmark {
+    }
+
+    @Threads(64)
+    public static class Threads64 extends CacheManagerBenchmark {
+    }
+}
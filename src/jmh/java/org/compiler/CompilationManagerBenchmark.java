@@ -0,0 +1,46 @@
+package org.compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECJ compile latency of a cache miss against the shared name environment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class CompilationManagerBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    BenchmarkCorpus corpus;
+
+    private CompilationManager compilationManager;
+
+    @Setup
+    public void setup() {
+        compilationManager = Benchmarks.compilationManager();
+        if (!compile().success()) {
+            throw new IllegalStateException("Corpus " + corpus + " does not compile");
+        }
+    }
+
+    @Benchmark
+    public CompilationManager.CompilationResult compile() {
+        return compilationManager.compile(null, corpus.className(), corpus.source(), Map.of());
+    }
+}
@@ -0,0 +1,59 @@
+package org.compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work directory lifecycle of a fork-mode run: create the temp directory, write the compiled
+ * classes and delete it all again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class FileManagerBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    BenchmarkCorpus corpus;
+
+    private FileManager fileManager;
+    private Map<String, byte[]> classes;
+
+    @Setup
+    public void setup() {
+        fileManager = Benchmarks.fileManager();
+        classes = Benchmarks.compilationManager()
+                .compile(null, corpus.className(), corpus.source(), Map.of())
+                .classes();
+    }
+
+    @Benchmark
+    public Path createAndDelete() {
+        Path directory = fileManager.createTempDirectory();
+        fileManager.deleteDirectory(directory);
+        return directory;
+    }
+
+    @Benchmark
+    public Path writeClasses() {
+        Path directory = fileManager.createTempDirectory();
+        fileManager.writeClassFiles(directory, classes);
+        fileManager.deleteDirectory(directory);
+        return directory;
+    }
+}
@@ -0,0 +1,69 @@
+package org.compiler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regex analysis and cache-key hashing, the work done on every submission before the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class SourceCodeAnalyzerBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    BenchmarkCorpus corpus;
+
+    private SourceCodeAnalyzer analyzer;
+    private CodeSnippet snippet;
+    private String source;
+    private Map<String, String> options;
+
+    @Setup
+    public void setup() {
+        analyzer = Benchmarks.analyzer();
+        snippet = corpus.snippet();
+        source = corpus.source();
+        options = new CompilationManager().options();
+    }
+
+    @Benchmark
+    public SourceCodeAnalyzer.ValidationResult validate() {
+        return analyzer.validate(source);
+    }
+
+    @Benchmark
+    public boolean isDeterministic() {
+        return analyzer.isDeterministic(source);
+    }
+
+    @Benchmark
+    public String extractClassName() {
+        return analyzer.extractClassName(source);
+    }
+
+    @Benchmark
+    public boolean hasMainMethod() {
+        return analyzer.hasMainMethod(source);
+    }
+
+    @Benchmark
+    public String generateHash() {
+        return analyzer.generateHash(snippet, options);
+    }
+}
@@ -0,0 +1,646 @@
+package org.compiler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-loop load generator for {@code POST /api/compiler}.
+ * <p>
+ * Requests arrive at a fixed average rate whether or not earlier ones have completed, so a slow
+ * server shows up as growing latency instead of a slower client. Latency is measured from the
+ * scheduled arrival, not from the moment the request was sent. Each request is one of several
+ * submission kinds drawn from a weighted mix with a fixed seed, so two runs with the same options
+ * send the same sequence. The report lists p50/p90/p99/p999 of the client latency, over all requests
+ * and over successful ones, and of every pipeline step the server returned in {@code timings}, per
+ * kind, together with the error counts.
+ * <p>
+ * It only depends on the JDK and runs straight from source:
+ * {@code java src/loadtest/java/org/compiler/LoadGenerator.java --rate 20 --duration 2m --out run.csv}.
+ * Passing the report of an earlier run as {@code --baseline} prints the change per step.
+ */
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+    private static final String CLIENT_STAGE = "client";
+    private static final String CLIENT_ALL_STAGE = "client-all";
+    private static final String ALL_KINDS = "all";
+    // Steps of the response timings in pipeline order, as named by the service
+    private static final List<String> STAGES = List.of(CLIENT_STAGE, CLIENT_ALL_STAGE, "validate", "cacheLookup",
+            "compileQueue", "compile", "executeQueue", "tempDir", "writeClasses", "spawn", "jvmStartup", "run",
+            "userCode", "outputDrain", "cleanup", "total");
+
+    private static final Pattern COMPILATION_SUCCESS = Pattern.compile("\"compilationSuccess\"\\s*:\\s*(true|false)");
+    private static final Pattern EXECUTION_SUCCESS = Pattern.compile("\"executionSuccess\"\\s*:\\s*(true|false)");
+    private static final Pattern TIMINGS = Pattern.compile("\"timings\"\\s*:\\s*\\{([^}]*)}");
+    private static final Pattern TIMING_ENTRY = Pattern.compile("\"(\\w+)\"\\s*:\\s*(\\d+)");
+
+    private final Options options;
+    private final HttpClient client;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Keeps fresh submissions fresh when several runs hit the same instance
+    private final long run = System.currentTimeMillis();
+
+    private LoadGenerator(Options options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.inFlight = new Semaphore(options.maxInFlight());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.println(Options.USAGE);
+            return;
+        }
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+        Report report = new LoadGenerator(options).run();
+        report.print();
+        if (options.out() != null) {
+            report.write(options.out());
+            System.out.println("Report written to " + options.out());
+        }
+        if (options.baseline() != null) {
+            report.compare(Report.read(options.baseline()));
+        }
+    }
+
+    private Report run() throws InterruptedException {
+        var random = new Random(options.seed());
+        long warmupNanos = options.warmup().toNanos();
+        long totalNanos = warmupNanos + options.duration().toNanos();
+        double meanIntervalNanos = 1e9 / options.rate();
+
+        System.out.printf(Locale.ROOT, "Sending %.1f req/s to %s for %s (warm-up %s), mix %s%n",
+                options.rate(), options.target(), options.duration(), options.warmup(), options.mix());
+        long start = System.nanoTime();
+        long offset = 0;
+        while (offset < totalNanos) {
+            long arrival = start + offset;
+            // parkNanos may return early, sending before the scheduled arrival would skew latencies
+            for (long wait = arrival - System.nanoTime(); wait > 0; wait = arrival - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Kind kind = options.mix().pick(random);
+            boolean measured = offset >= warmupNanos;
+            if (inFlight.tryAcquire()) {
+                String body = kind.request(run, sequence.getAndIncrement(), options);
+                requests.execute(() -> {
+                    try {
+                        send(kind, body, arrival, measured);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } else if (measured) {
+                samples.add(new Sample(kind, Outcome.CLIENT_DROPPED, 0, Map.of()));
+            }
+            offset += options.poisson()
+                    ? (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos)
+                    : (long) meanIntervalNanos;
+        }
+        long sendingNanos = System.nanoTime() - start - warmupNanos;
+
+        requests.shutdown();
+        if (!requests.awaitTermination(options.requestTimeout().toSeconds() + 5, TimeUnit.SECONDS)) {
+            requests.shutdownNow();
+        }
+        return Report.of(options, new ArrayList<>(samples), sendingNanos);
+    }
+
+    private void send(Kind kind, String body, long arrival, boolean measured) {
+        var request = HttpRequest.newBuilder(options.target())
+                .timeout(options.requestTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        Sample sample;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long latency = System.nanoTime() - arrival;
+            sample = switch (response.statusCode()) {
+                case 200 -> new Sample(kind, kind.outcome(response.body()), latency, timings(response.body()));
+                case 429 -> new Sample(kind, Outcome.REJECTED, latency, Map.of());
+                default -> new Sample(kind, response.statusCode() >= 500 ? Outcome.SERVER_ERROR : Outcome.HTTP_ERROR,
+                        latency, Map.of());
+            };
+        } catch (HttpTimeoutException e) {
+            sample = new Sample(kind, Outcome.TIMEOUT, System.nanoTime() - arrival, Map.of());
+        } catch (IOException e) {
+            sample = new Sample(kind, Outcome.IO_ERROR, System.nanoTime() - arrival, Map.of());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (measured) {
+            samples.add(sample);
+        }
+    }
+
+    private static Map<String, Long> timings(String body) {
+        Matcher object = TIMINGS.matcher(body);
+        if (!object.find()) {
+            return Map.of();
+        }
+        var timings = new LinkedHashMap<String, Long>();
+        Matcher entry = TIMING_ENTRY.matcher(object.group(1));
+        while (entry.find()) {
+            timings.put(entry.group(1), Long.parseLong(entry.group(2)));
+        }
+        return timings;
+    }
+
+    private static boolean flag(Pattern pattern, String body) {
+        Matcher matcher = pattern.matcher(body);
+        return matcher.find() && Boolean.parseBoolean(matcher.group(1));
+    }
+
+    private static String json(String sourceCode, int timeoutSeconds) {
+        var escaped = new StringBuilder(sourceCode.length() + 64);
+        for (int i = 0; i < sourceCode.length(); i++) {
+            char c = sourceCode.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\t' -> escaped.append("\\t");
+                default -> escaped.append(c);
+            }
+        }
+        return "{\"sourceCode\":\"" + escaped + "\",\"timeoutSeconds\":" + timeoutSeconds + "}";
+    }
+
+    /**
+     * Submission kinds of the mix. Sources stay within Java 8, the level the service compiles at.
+     */
+    enum Kind {
+        /** One of a few fixed programs, compiled once and then served from the bytecode cache. */
+        CACHED {
+            @Override
+            String source(long run, long sequence, Options options) {
+                long template = sequence % options.templates();
+                return """
+                        public class Main {
+                            public static void main(String[] args) {
+                                int sum = 0;
+                                for (int i = 0; i < 1000; i++) {
+                                    sum += i %% %d;
+                                }
+                                System.out.println("Template %d: " + sum);
+                            }
+                        }
+                        """.formatted(template + 2, template);
+            }
+        },
+        /** A program never seen before, so every request pays for a compilation. */
+        FRESH {
+            @Override
+            String source(long run, long sequence, Options options) {
+                return """
+                        import java.util.*;
+
+                        public class Main {
+                            static final String SUBMISSION = "%d-%d";
+
+                            public static void main(String[] args) {
+                                List<Integer> values = new ArrayList<>();
+                                for (int i = 0; i < 100; i++) {
+                                    values.add(i * i);
+                                }
+                                Collections.reverse(values);
+                                System.out.println(SUBMISSION + ": " + values.subList(0, 5));
+                            }
+                        }
+                        """.formatted(run, sequence);
+            }
+        },
+        /** A new program that fails to compile. */
+        COMPILE_ERROR {
+            @Override
+            String source(long run, long sequence, Options options) {
+                return """
+                        public class Main {
+                            public static void main(String[] args) {
+                                int submission = "%d-%d";
+                                System.out.println(submission);
+                            }
+                        }
+                        """.formatted(run, sequence);
+            }
+
+            @Override
+            Outcome outcome(String body) {
+                return flag(COMPILATION_SUCCESS, body) ? Outcome.UNEXPECTED : Outcome.OK;
+            }
+        },
+        /** A cached program that keeps a CPU busy for {@code --long-run}. */
+        LONG_RUNNING {
+            @Override
+            String source(long run, long sequence, Options options) {
+                return """
+                        public class Main {
+                            public static void main(String[] args) {
+                                long end = System.nanoTime() + %dL;
+                                long iterations = 0;
+                                while (System.nanoTime() < end) {
+                                    iterations++;
+                                }
+                                System.out.println("Done after " + iterations + " iterations");
+                            }
+                        }
+                        """.formatted(options.longRun().toNanos());
+            }
+        },
+        /** A cached program that prints {@code --output-lines} lines. */
+        HEAVY_OUTPUT {
+            @Override
+            String source(long run, long sequence, Options options) {
+                return """
+                        public class Main {
+                            public static void main(String[] args) {
+                                long start = System.nanoTime();
+                                StringBuilder line = new StringBuilder();
+                                for (int i = 0; i < 72; i++) {
+                                    line.append((char) ('a' + i %% 26));
+                                }
+                                for (int i = 0; i < %d; i++) {
+                                    System.out.println(i + " " + line);
+                                }
+                                System.out.println("Printed in " + (System.nanoTime() - start) / 1000000 + " ms");
+                            }
+                        }
+                        """.formatted(options.outputLines());
+            }
+        };
+
+        abstract String source(long run, long sequence, Options options);
+
+        String request(long run, long sequence, Options options) {
+            int timeoutSeconds = (int) Math.max(options.longRun().toSeconds() * 2 + 10, 30);
+            return json(source(run, sequence, options), timeoutSeconds);
+        }
+
+        Outcome outcome(String body) {
+            return flag(COMPILATION_SUCCESS, body) && flag(EXECUTION_SUCCESS, body) ? Outcome.OK : Outcome.UNEXPECTED;
+        }
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+
+        static Kind of(String label) {
+            for (Kind kind : values()) {
+                if (kind.label().equals(label)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Unknown kind '" + label + "', expected one of " +
+                    Arrays.stream(values()).map(Kind::label).toList());
+        }
+    }
+
+    /**
+     * How a request ended. Only {@link #OK} responses contribute latencies; compile errors count as
+     * OK for {@link Kind#COMPILE_ERROR} and as {@link #UNEXPECTED} for every other kind.
+     */
+    enum Outcome {
+        OK, UNEXPECTED, REJECTED, SERVER_ERROR, HTTP_ERROR, TIMEOUT, IO_ERROR, CLIENT_DROPPED;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    record Sample(Kind kind, Outcome outcome, long latencyNanos, Map<String, Long> timings) {}
+
+    record Mix(Map<Kind, Integer> weights, int total) {
+
+        static Mix parse(String value) {
+            var weights = new EnumMap<Kind, Integer>(Kind.class);
+            for (String part : value.split(",")) {
+                String[] entry = part.trim().split("=");
+                if (entry.length != 2) {
+                    throw new IllegalArgumentException("Invalid mix entry '" + part + "', expected kind=weight");
+                }
+                weights.merge(Kind.of(entry[0].trim()), Integer.parseInt(entry[1].trim()), Integer::sum);
+            }
+            int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+            if (total <= 0) {
+                throw new IllegalArgumentException("Mix needs at least one positive weight");
+            }
+            return new Mix(weights, total);
+        }
+
+        Kind pick(Random random) {
+            int ticket = random.nextInt(total);
+            for (var entry : weights.entrySet()) {
+                ticket -= entry.getValue();
+                if (ticket < 0) {
+                    return entry.getKey();
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public String toString() {
+            var text = new StringBuilder();
+            weights.forEach((kind, weight) -> text.append(text.isEmpty() ? "" : ",").append(kind.label())
+                    .append('=').append(weight));
+            return text.toString();
+        }
+    }
+
+    record Options(URI target, double rate, Duration duration, Duration warmup, Mix mix, boolean poisson,
+                   long seed, int templates, Duration longRun, int outputLines, int maxInFlight,
+                   Duration requestTimeout, Path out, Path baseline) {
+
+        static final String USAGE = """
+                Usage: java src/loadtest/java/org/compiler/LoadGenerator.java [options]
+                  --url <base url>          Service to test (default http://localhost:8080)
+                  --rate <req/s>            Average arrival rate (default 10)
+                  --duration <time>         Measured period, e.g. 60s or 5m (default 60s)
+                  --warmup <time>           Unmeasured period before it (default 10s)
+                  --mix <kind=weight,...>   Submission mix (default %s)
+                  --arrivals <mode>         poisson or constant (default poisson)
+                  --seed <n>                Seed for arrivals and mix (default 1)
+                  --templates <n>           Distinct cached programs (default 5)
+                  --long-run <time>         Busy time of long-running programs (default 2s)
+                  --output-lines <n>        Lines printed by heavy-output programs (default 20000)
+                  --max-in-flight <n>       Requests open at once before arrivals are dropped (default 1000)
+                  --timeout <time>          Per-request timeout (default 90s)
+                  --out <file>              Write the report as CSV
+                  --baseline <file>         Compare against an earlier CSV report
+                """.formatted(Options.DEFAULT_MIX);
+
+        static final String DEFAULT_MIX = "cached=50,fresh=25,compile-error=10,long-running=10,heavy-output=5";
+
+        static Options parse(String[] args) {
+            var values = new HashMap<String, String>();
+            for (int i = 0; i < args.length; i++) {
+                if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Unexpected argument '" + args[i] + "'");
+                }
+                values.put(args[i].substring(2), args[++i]);
+            }
+            String arrivals = values.getOrDefault("arrivals", "poisson");
+            if (!arrivals.equals("poisson") && !arrivals.equals("constant")) {
+                throw new IllegalArgumentException("Unknown arrivals '" + arrivals + "'");
+            }
+            var options = new Options(
+                    URI.create(values.getOrDefault("url", "http://localhost:8080").replaceAll("/+$", "") +
+                            "/api/compiler"),
+                    Double.parseDouble(values.getOrDefault("rate", "10")),
+                    duration(values.getOrDefault("duration", "60s")),
+                    duration(values.getOrDefault("warmup", "10s")),
+                    Mix.parse(values.getOrDefault("mix", DEFAULT_MIX)),
+                    arrivals.equals("poisson"),
+                    Long.parseLong(values.getOrDefault("seed", "1")),
+                    Integer.parseInt(values.getOrDefault("templates", "5")),
+                    duration(values.getOrDefault("long-run", "2s")),
+                    Integer.parseInt(values.getOrDefault("output-lines", "20000")),
+                    Integer.parseInt(values.getOrDefault("max-in-flight", "1000")),
+                    duration(values.getOrDefault("timeout", "90s")),
+                    values.containsKey("out") ? Path.of(values.get("out")) : null,
+                    values.containsKey("baseline") ? Path.of(values.get("baseline")) : null);
+            if (options.rate() <= 0 || options.templates() <= 0 || options.maxInFlight() <= 0) {
+                throw new IllegalArgumentException("rate, templates and max-in-flight must be positive");
+            }
+            return options;
+        }
+
+        private static Duration duration(String value) {
+            Matcher matcher = Pattern.compile("(\\d+)(ms|s|m|h)").matcher(value);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid duration '" + value + "', expected e.g. 500ms, 30s or 5m");
+            }
+            long amount = Long.parseLong(matcher.group(1));
+            return switch (matcher.group(2)) {
+                case "ms" -> Duration.ofMillis(amount);
+                case "s" -> Duration.ofSeconds(amount);
+                case "m" -> Duration.ofMinutes(amount);
+                default -> Duration.ofHours(amount);
+            };
+        }
+
+        String describe() {
+            return String.format(Locale.ROOT, "target=%s rate=%s duration=%s warmup=%s mix=%s arrivals=%s seed=%d",
+                    target, rate, duration, warmup, mix, poisson ? "poisson" : "constant", seed);
+        }
+    }
+
+    /**
+     * Percentiles per kind and stage plus outcome counts. {@code client} and the pipeline steps only
+     * cover successful requests, {@code client-all} the latency of every request that was sent,
+     * including rejections, errors and timeouts. As CSV every row is
+     * {@code kind,metric,count,p50,p90,p99,p999,max} with times in milliseconds; outcome rows use
+     * {@code outcome.<name>} as metric and only fill the count.
+     */
+    record Report(String parameters, Map<String, Map<String, Row>> rows) {
+
+        static Report of(Options options, List<Sample> samples, long sendingNanos) {
+            var latencies = new TreeMap<String, Map<String, List<Long>>>();
+            var outcomes = new TreeMap<String, Map<Outcome, Long>>();
+            for (Sample sample : samples) {
+                for (String kind : List.of(sample.kind().label(), ALL_KINDS)) {
+                    outcomes.computeIfAbsent(kind, k -> new EnumMap<>(Outcome.class))
+                            .merge(sample.outcome(), 1L, Long::sum);
+                    if (sample.outcome() == Outcome.CLIENT_DROPPED) {
+                        continue;
+                    }
+                    var stages = latencies.computeIfAbsent(kind, k -> new LinkedHashMap<>());
+                    stages.computeIfAbsent(CLIENT_ALL_STAGE, k -> new ArrayList<>()).add(sample.latencyNanos());
+                    if (sample.outcome() != Outcome.OK) {
+                        continue;
+                    }
+                    stages.computeIfAbsent(CLIENT_STAGE, k -> new ArrayList<>()).add(sample.latencyNanos());
+                    sample.timings().forEach((stage, nanos) ->
+                            stages.computeIfAbsent(stage, k -> new ArrayList<>()).add(nanos));
+                }
+            }
+
+            var rows = new TreeMap<String, Map<String, Row>>();
+            latencies.forEach((kind, stages) -> stages.keySet().stream()
+                    .sorted(Comparator.comparingInt(Report::stageOrder))
+                    .forEach(stage -> rows.computeIfAbsent(kind, k -> new LinkedHashMap<>())
+                            .put(stage, Row.of(stages.get(stage)))));
+            outcomes.forEach((kind, counts) -> counts.forEach((outcome, count) ->
+                    rows.computeIfAbsent(kind, k -> new LinkedHashMap<>())
+                            .put("outcome." + outcome.label(), Row.count(count))));
+            String parameters = options.describe() + String.format(Locale.ROOT, " started=%s measured=%.1fs",
+                    Instant.now(), sendingNanos / 1e9);
+            return new Report(parameters, rows);
+        }
+
+        void print() {
+            System.out.println();
+            System.out.println(parameters);
+            System.out.printf("%n%-14s %-18s %8s %10s %10s %10s %10s %10s%n",
+                    "kind", "metric", "count", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+            rows.forEach((kind, metrics) -> metrics.forEach((metric, row) -> {
+                if (row.percentiles() == null) {
+                    System.out.printf("%-14s %-18s %8d%n", kind, metric, row.count());
+                } else {
+                    System.out.printf(Locale.ROOT, "%-14s %-18s %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                            kind, metric, row.count(), row.percentiles()[0], row.percentiles()[1],
+                            row.percentiles()[2], row.percentiles()[3], row.max());
+                }
+            }));
+        }
+
+        void write(Path file) {
+            var csv = new StringBuilder("# ").append(parameters).append('\n');
+            csv.append("kind,metric,count,p50,p90,p99,p999,max\n");
+            rows.forEach((kind, metrics) -> metrics.forEach((metric, row) -> {
+                csv.append(kind).append(',').append(metric).append(',').append(row.count());
+                if (row.percentiles() != null) {
+                    for (double value : row.percentiles()) {
+                        csv.append(String.format(Locale.ROOT, ",%.3f", value));
+                    }
+                    csv.append(String.format(Locale.ROOT, ",%.3f", row.max()));
+                } else {
+                    csv.append(",,,,,");
+                }
+                csv.append('\n');
+            }));
+            try {
+                Files.writeString(file, csv);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static Report read(Path file) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            String parameters = "";
+            var rows = new TreeMap<String, Map<String, Row>>();
+            for (String line : lines) {
+                if (line.startsWith("# ")) {
+                    parameters = line.substring(2);
+                    continue;
+                }
+                if (line.isBlank() || line.startsWith("kind,")) {
+                    continue;
+                }
+                String[] cells = line.split(",", -1);
+                Row row = cells[3].isEmpty()
+                        ? Row.count(Long.parseLong(cells[2]))
+                        : new Row(Long.parseLong(cells[2]), new double[]{Double.parseDouble(cells[3]),
+                                Double.parseDouble(cells[4]), Double.parseDouble(cells[5]),
+                                Double.parseDouble(cells[6])}, Double.parseDouble(cells[7]));
+                rows.computeIfAbsent(cells[0], k -> new LinkedHashMap<>()).put(cells[1], row);
+            }
+            return new Report(parameters, rows);
+        }
+
+        /**
+         * Prints p50 and p99 of both reports side by side. Runs are only comparable with the same
+         * rate, duration, mix and seed, so differing parameters are called out first.
+         */
+        void compare(Report baseline) {
+            System.out.println();
+            System.out.println("Baseline: " + baseline.parameters());
+            if (!withoutStart(baseline.parameters()).equals(withoutStart(parameters))) {
+                System.out.println("Warning: the runs used different parameters");
+            }
+            System.out.printf("%n%-14s %-18s %21s %21s %17s%n", "kind", "metric", "p50 ms (base > now)",
+                    "p99 ms (base > now)", "count (base > now)");
+            rows.forEach((kind, metrics) -> metrics.forEach((metric, row) -> {
+                Row before = baseline.rows().getOrDefault(kind, Map.of()).get(metric);
+                if (before == null) {
+                    return;
+                }
+                if (row.percentiles() == null || before.percentiles() == null) {
+                    System.out.printf("%-14s %-18s %21s %21s %8d > %-6d%n", kind, metric, "", "",
+                            before.count(), row.count());
+                } else {
+                    System.out.printf(Locale.ROOT, "%-14s %-18s %21s %21s %8d > %-6d%n", kind, metric,
+                            change(before.percentiles()[0], row.percentiles()[0]),
+                            change(before.percentiles()[2], row.percentiles()[2]), before.count(), row.count());
+                }
+            }));
+        }
+
+        private static int stageOrder(String stage) {
+            int index = STAGES.indexOf(stage);
+            return index < 0 ? STAGES.size() : index;
+        }
+
+        private static String withoutStart(String parameters) {
+            int started = parameters.indexOf(" started=");
+            return started < 0 ? parameters : parameters.substring(0, started);
+        }
+
+        private static String change(double before, double now) {
+            String percent = before == 0 ? "" : String.format(Locale.ROOT, " %+.0f%%", (now - before) * 100 / before);
+            return String.format(Locale.ROOT, "%.1f > %.1f%s", before, now, percent);
+        }
+    }
+
+    /**
+     * Percentiles are nearest-rank over all samples, in milliseconds; {@code null} for count-only rows.
+     */
+    record Row(long count, double[] percentiles, double max) {
+
+        static Row of(List<Long> nanos) {
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            double[] percentiles = new double[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                int rank = (int) Math.ceil(PERCENTILES[i] * sorted.length);
+                percentiles[i] = sorted[Math.max(rank - 1, 0)] / 1e6;
+            }
+            return new Row(sorted.length, percentiles, sorted[sorted.length - 1] / 1e6);
+        }
+
+        static Row count(long count) {
+            return new Row(count, null, 0);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.compiler;
+
+import io.quarkus.vertx.http.ManagementInterface;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Operator endpoints. They are only registered on the management interface
+ * ({@code quarkus.management.enabled}), a separate port that is not exposed next to
+ * {@code /api/compiler}.
+ */
+@ApplicationScoped
+public class AdminRoutes {
+
+    private static final Logger LOG = Logger.getLogger(AdminRoutes.class);
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Inject
+    FlightRecording flightRecording;
+
+    @ConfigProperty(name = "compiler.jfr.dump-endpoint", defaultValue = "false")
+    boolean dumpEndpoint;
+
+    private final AtomicBoolean dumping = new AtomicBoolean();
+
+    void register(@Observes ManagementInterface management) {
+        if (dumpEndpoint) {
+            management.router().get("/admin/jfr").blockingHandler(this::dumpFlightRecording);
+        }
+    }
+
+    /**
+     * Downloads the always-on Flight Recorder ring, open it with JDK Mission Control or {@code jfr print}.
+     * One dump at a time, the temporary file is deleted once it has been sent.
+     */
+    private void dumpFlightRecording(RoutingContext context) {
+        if (!dumping.compareAndSet(false, true)) {
+            context.response().setStatusCode(429).putHeader("Content-Type", "text/plain")
+                    .end("A flight recording dump is already in progress");
+            return;
+        }
+        Path file = null;
+        boolean sending = false;
+        try {
+            Optional<Path> dump = flightRecording.dump();
+            if (dump.isEmpty()) {
+                context.response().setStatusCode(503).putHeader("Content-Type", "text/plain")
+                        .end("Flight recording is disabled");
+                return;
+            }
+
+            file = dump.get();
+            Path sent = file;
+            String fileName = "compiler-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr";
+            context.response()
+                    .putHeader("Content-Type", "application/octet-stream")
+                    .putHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                    .sendFile(file.toString())
+                    .onComplete(result -> finishDump(sent));
+            sending = true;
+        } catch (RuntimeException e) {
+            LOG.warnf("Flight recording dump failed: %s", e.getMessage());
+            context.response().setStatusCode(500).putHeader("Content-Type", "text/plain")
+                    .end("Flight recording dump failed");
+        } finally {
+            // Once the file is being sent its completion handler cleans up
+            if (!sending) {
+                finishDump(file);
+            }
+        }
+    }
+
+    private void finishDump(Path file) {
+        try {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            // Left for the temp directory cleanup
+        } finally {
+            dumping.set(false);
+        }
+    }
+}
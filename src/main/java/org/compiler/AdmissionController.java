@@ -0,0 +1,72 @@
+package org.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Admission limits for the compile and execute stages. Compilation is CPU bound and defaults to
+ * one slot per core; execution is bounded by how many executor JVMs the node can hold, and by
+ * default that bound adapts to how execution latency responds to load. The execute limit is the
+ * only bound on concurrent executor JVMs, the runner pool does not queue runs behind it.
+ */
+@ApplicationScoped
+public class AdmissionController {
+
+    @ConfigProperty(name = "compiler.admission.compile.limit")
+    Optional<Integer> compileLimit;
+
+    @ConfigProperty(name = "compiler.admission.compile.queue", defaultValue = "64")
+    int compileQueue;
+
+    @ConfigProperty(name = "compiler.admission.execute.limit", defaultValue = "4")
+    int executeLimit;
+
+    @ConfigProperty(name = "compiler.admission.execute.queue", defaultValue = "64")
+    int executeQueue;
+
+    @ConfigProperty(name = "compiler.admission.execute.adaptive", defaultValue = "true")
+    boolean executeAdaptive;
+
+    @ConfigProperty(name = "compiler.admission.execute.min-limit", defaultValue = "1")
+    int executeMinLimit;
+
+    @ConfigProperty(name = "compiler.admission.execute.max-limit", defaultValue = "16")
+    int executeMaxLimit;
+
+    @ConfigProperty(name = "compiler.admission.execute.latency-tolerance", defaultValue = "2.0")
+    double executeLatencyTolerance;
+
+    @ConfigProperty(name = "compiler.admission.max-wait", defaultValue = "10s")
+    Duration maxWait;
+
+    private ConcurrencyLimiter compile;
+    private ConcurrencyLimiter execute;
+
+    @PostConstruct
+    void init() {
+        compile = new ConcurrencyLimiter("compile",
+                compileLimit.orElse(Runtime.getRuntime().availableProcessors()), compileQueue, maxWait);
+        execute = new ConcurrencyLimiter("execute", executeLimit, executeQueue, maxWait);
+        if (executeAdaptive) {
+            execute.setAdaptiveLimit(new GradientLimit(executeLimit, executeMinLimit, executeMaxLimit,
+                    executeLatencyTolerance));
+        }
+    }
+
+    public ConcurrencyLimiter compile() {
+        return compile;
+    }
+
+    public ConcurrencyLimiter execute() {
+        return execute;
+    }
+
+    public List<ConcurrencyLimiter.Statistics> statistics() {
+        return List.of(compile.statistics(), execute.statistics());
+    }
+}
@@ -0,0 +1,24 @@
+package org.compiler;
+
+/**
+ * Thrown when a pipeline stage is saturated and its wait queue cannot take another request.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String stage;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String stage, long retryAfterSeconds) {
+        super("Server is busy (" + stage + " queue full), retry in " + retryAfterSeconds + "s");
+        this.stage = stage;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String stage() {
+        return stage;
+    }
+
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,46 +1,127 @@
 package org.compiler;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.lang.ref.SoftReference;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.time.Duration;
 import java.util.Optional;
 
+/**
+ * Bytecode bundle cache bounded by total bytes. Reads are lock-free and admission uses Caffeine's
+ * W-TinyLFU policy, so a burst of one-off submissions cannot flush frequently requested programs.
+ * <p>
+ * The on-heap tier only holds the hottest bundles: entries it evicts for size are demoted to the
+ * {@link OffHeapCache} slab, and off-heap entries are promoted back once they have been hit often
+ * enough. Misses fall through to the optional {@link PersistentCache} tier.
+ */
 @ApplicationScoped
 public class CacheManager {
-    
-    private static final int MAX_CACHE_ENTRIES = 100;
-    
-    private final Map<String, SoftReference<byte[]>> bytecodeCache = 
-        new LinkedHashMap<>(MAX_CACHE_ENTRIES + 1, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, SoftReference<byte[]>> eldest) {
-                return size() > MAX_CACHE_ENTRIES;
-            }
-        };
-
-    public synchronized Optional<byte[]> get(String codeHash) {
-        SoftReference<byte[]> ref = bytecodeCache.get(codeHash);
-        if (ref != null) {
-            byte[] bytecode = ref.get();
-            if (bytecode != null) {
-                return Optional.of(bytecode);
+
+    // Approximate per-entry cost of the 64-char key and map node
+    private static final int ENTRY_OVERHEAD_BYTES = 192;
+
+    @ConfigProperty(name = "compiler.cache.max-bytes", defaultValue = "8388608")
+    long maxBytes;
+
+    @ConfigProperty(name = "compiler.cache.offheap.promote-after", defaultValue = "2")
+    int promoteAfter;
+
+    @ConfigProperty(name = "compiler.cache.expire-after-access", defaultValue = "6h")
+    Duration expireAfterAccess;
+
+    @Inject
+    OffHeapCache offHeapCache;
+
+    @Inject
+    PersistentCache persistentCache;
+
+    private Cache<String, byte[]> bundleCache;
+
+    @PostConstruct
+    void init() {
+        bundleCache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String codeHash, byte[] bundle) -> bundle.length + ENTRY_OVERHEAD_BYTES)
+            .expireAfterAccess(expireAfterAccess)
+            .evictionListener((String codeHash, byte[] bundle, RemovalCause cause) -> {
+                if (cause == RemovalCause.SIZE && offHeapCache.isEnabled()) {
+                    offHeapCache.put(codeHash, bundle);
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    public Optional<byte[]> get(String codeHash) {
+        var event = new PipelineEvents.CacheLookup();
+        event.begin();
+        event.snippetHash = codeHash;
+        Optional<byte[]> bundle = lookup(codeHash, event);
+        event.bundleBytes = bundle.map(bytes -> bytes.length).orElse(0);
+        event.commit();
+        return bundle;
+    }
+
+    private Optional<byte[]> lookup(String codeHash, PipelineEvents.CacheLookup event) {
+        byte[] bundle = bundleCache.getIfPresent(codeHash);
+        if (bundle != null) {
+            event.outcome = "heap";
+            return Optional.of(bundle);
+        }
+        if (offHeapCache.isEnabled()) {
+            Optional<OffHeapCache.Hit> hit = offHeapCache.get(codeHash);
+            if (hit.isPresent()) {
+                if (hit.get().frequency() >= promoteAfter) {
+                    offHeapCache.remove(codeHash);
+                    bundleCache.put(codeHash, hit.get().bundle());
+                }
+                event.outcome = "off-heap";
+                return Optional.of(hit.get().bundle());
             }
-            bytecodeCache.remove(codeHash);
         }
-        return Optional.empty();
+        Optional<byte[]> persisted = persistentCache.get(codeHash);
+        persisted.ifPresent(restored -> {
+            if (offHeapCache.isEnabled()) {
+                offHeapCache.put(codeHash, restored);
+            } else {
+                bundleCache.put(codeHash, restored);
+            }
+        });
+        event.outcome = persisted.isPresent() ? "disk" : "miss";
+        return persisted;
+    }
+
+    public void put(String codeHash, byte[] bundle) {
+        bundleCache.put(codeHash, bundle);
+        persistentCache.put(codeHash, bundle);
     }
 
-    public synchronized void put(String codeHash, byte[] bytecode) {
-        bytecodeCache.put(codeHash, new SoftReference<>(bytecode));
+    public long size() {
+        return bundleCache.estimatedSize();
     }
 
-    public synchronized int size() {
-        return bytecodeCache.size();
+    public void clear() {
+        bundleCache.invalidateAll();
+        offHeapCache.clear();
     }
 
-    public synchronized void clear() {
-        bytecodeCache.clear();
+    public Statistics statistics() {
+        CacheStats stats = bundleCache.stats();
+        long weightedSize = bundleCache.policy().eviction()
+            .flatMap(eviction -> eviction.weightedSize().stream().boxed().findFirst())
+            .orElse(0L);
+        return new Statistics(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+            stats.evictionWeight(), bundleCache.estimatedSize(), weightedSize, maxBytes,
+            offHeapCache.statistics(), persistentCache.statistics());
     }
+
+    public record Statistics(long hits, long misses, double hitRate, long evictions, long evictedBytes,
+                             long entries, long weightedBytes, long maxBytes,
+                             OffHeapCache.Statistics offHeap, PersistentCache.Statistics disk) {}
 }
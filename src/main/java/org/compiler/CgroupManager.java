@@ -0,0 +1,181 @@
+package org.compiler;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Places executor processes in their own cgroup v2 leaf under a delegated root, so memory, CPU
+ * and process count are capped by the kernel for everything the program does, native memory and
+ * child processes included. Per-leaf OOM kills and CPU throttling are read back for the result.
+ * <p>
+ * When no usable root is configured the executors run without a cgroup and only get the JVM
+ * level limits from {@link #jvmOptions()}.
+ */
+@ApplicationScoped
+public class CgroupManager {
+
+    private static final Logger LOG = Logger.getLogger(CgroupManager.class);
+
+    private static final List<String> CONTROLLERS = List.of("memory", "cpu", "pids");
+    private static final List<String> FALLBACK_JVM_OPTIONS = List.of(
+        "-XX:ActiveProcessorCount=1",
+        "-XX:MaxDirectMemorySize=32m",
+        "-XX:ReservedCodeCacheSize=32m"
+    );
+
+    @ConfigProperty(name = "compiler.cgroup.root")
+    Optional<Path> root;
+
+    @ConfigProperty(name = "compiler.cgroup.memory-max", defaultValue = "402653184")
+    long memoryMax;
+
+    @ConfigProperty(name = "compiler.cgroup.cpu-max", defaultValue = "100000 100000")
+    String cpuMax;
+
+    @ConfigProperty(name = "compiler.cgroup.pids-max", defaultValue = "64")
+    int pidsMax;
+
+    private volatile boolean enabled;
+
+    void onStart(@Observes StartupEvent event) {
+        if (root.isEmpty()) {
+            return;
+        }
+        Path cgroup = root.get();
+        try {
+            String available = Files.readString(cgroup.resolve("cgroup.controllers"));
+            for (String controller : CONTROLLERS) {
+                if (!List.of(available.trim().split(" ")).contains(controller)) {
+                    throw new IOException("Controller " + controller + " is not delegated to " + cgroup);
+                }
+            }
+            Files.writeString(cgroup.resolve("cgroup.subtree_control"), "+memory +cpu +pids");
+            enabled = true;
+        } catch (IOException | SecurityException e) {
+            LOG.warnf("cgroup v2 isolation is unavailable, executors fall back to JVM limits: %s", e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Extra executor JVM options: none when the cgroup enforces the limits, otherwise flags that
+     * bound what the JVM itself can grow.
+     */
+    public List<String> jvmOptions() {
+        return enabled ? List.of() : FALLBACK_JVM_OPTIONS;
+    }
+
+    /**
+     * Creates a leaf with the configured limits and moves the process into it. The process runs
+     * unconfined for the instant between its start and the move.
+     */
+    public Optional<Leaf> place(Process process, String name) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Path leaf = root.get().resolve(name);
+        try {
+            Files.createDirectories(leaf);
+            Files.writeString(leaf.resolve("memory.max"), Long.toString(memoryMax));
+            Files.writeString(leaf.resolve("memory.swap.max"), "0");
+            Files.writeString(leaf.resolve("cpu.max"), cpuMax);
+            Files.writeString(leaf.resolve("pids.max"), Integer.toString(pidsMax));
+            Files.writeString(leaf.resolve("cgroup.procs"), Long.toString(process.pid()));
+            return Optional.of(new Leaf(leaf));
+        } catch (IOException | SecurityException e) {
+            LOG.debugf("Could not place executor %d in %s: %s", process.pid(), leaf, e.getMessage());
+            try {
+                Files.deleteIfExists(leaf);
+            } catch (IOException ignored) {
+                // Left for the next cleanup
+            }
+            return Optional.empty();
+        }
+    }
+
+    public static final class Leaf {
+
+        private final Path path;
+
+        private Leaf(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Cumulative counters of the leaf, runs sharing an executor compare two snapshots.
+         */
+        public Snapshot snapshot() {
+            return new Snapshot(readKey("memory.events", "oom_kill"), readKey("cpu.stat", "throttled_usec"));
+        }
+
+        /**
+         * Kills every process in the leaf, including ones that left the executor's process tree.
+         */
+        public void kill() {
+            try {
+                Files.writeString(path.resolve("cgroup.kill"), "1");
+            } catch (IOException e) {
+                // cgroup.kill needs Linux 5.14, signal the members one by one
+                try {
+                    for (String pid : Files.readAllLines(path.resolve("cgroup.procs"))) {
+                        ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                    }
+                } catch (IOException | RuntimeException ignored) {
+                    // Already gone
+                }
+            }
+        }
+
+        /**
+         * Deletes the leaf once the process has exited, after the final snapshot was taken.
+         */
+        public void removeAfter(Process process) {
+            process.onExit().thenRun(this::remove);
+        }
+
+        private void remove() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // Still populated or already gone
+            }
+        }
+
+        private long readKey(String file, String key) {
+            try {
+                for (String line : Files.readAllLines(path.resolve(file))) {
+                    if (line.startsWith(key + " ")) {
+                        return Long.parseLong(line.substring(key.length() + 1).trim());
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Reported as unknown
+            }
+            return -1;
+        }
+    }
+
+    public record Snapshot(long oomKills, long throttledMicros) {
+
+        public boolean oomKilledSince(Snapshot earlier) {
+            return oomKills > Math.max(0, earlier.oomKills);
+        }
+
+        public long throttledNanosSince(Snapshot earlier) {
+            return throttledMicros < 0 || earlier.throttledMicros < 0
+                    ? -1 : (throttledMicros - earlier.throttledMicros) * 1_000;
+        }
+    }
+}
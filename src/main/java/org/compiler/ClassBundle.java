@@ -0,0 +1,51 @@
+package org.compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Packs every class file a compilation emitted into a single byte array so the set can be cached
+ * and restored as one unit. Layout: class count, then per class its name length, UTF-8 name,
+ * bytecode length and bytecode.
+ */
+public final class ClassBundle {
+
+    private ClassBundle() {
+    }
+
+    public static byte[] pack(Map<String, byte[]> classes) {
+        int size = Integer.BYTES;
+        var names = new byte[classes.size()][];
+        int index = 0;
+        for (var entry : classes.entrySet()) {
+            names[index] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + names[index].length + Integer.BYTES + entry.getValue().length;
+            index++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(classes.size());
+        index = 0;
+        for (byte[] bytecode : classes.values()) {
+            buffer.putShort((short) names[index].length).put(names[index++]);
+            buffer.putInt(bytecode.length).put(bytecode);
+        }
+        return buffer.array();
+    }
+
+    public static Map<String, byte[]> unpack(byte[] bundle) {
+        ByteBuffer buffer = ByteBuffer.wrap(bundle);
+        int count = buffer.getInt();
+        Map<String, byte[]> classes = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            var name = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(name);
+            var bytecode = new byte[buffer.getInt()];
+            buffer.get(bytecode);
+            classes.put(new String(name, StandardCharsets.UTF_8), bytecode);
+        }
+        return classes;
+    }
+}
@@ -1,5 +1,8 @@
 package org.compiler;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.time.LocalDateTime;
 import java.util.Map;
 
@@ -9,14 +12,27 @@ public final class CodeSnippet {
     public String title;
     public String sourceCode;
     public String language = "java";
+    public Integer timeoutSeconds;
     public String compilationOutput;
     public String executionOutput;
+    public String stdout;
+    public String stderr;
+    public boolean outputTruncated;
+    public long outputBytesDropped;
     public LocalDateTime createdAt = LocalDateTime.now();
     public Boolean compilationSuccess = false;
     public Boolean executionSuccess = false;
     public long compilationTimeMs;
     public long executionTimeMs;
     public long peakMemoryBytes;
+    public Long peakHeapBytes;
+    public Long cpuUserTimeMs;
+    public Long cpuSystemTimeMs;
+    public boolean oomKilled;
+    public Long cpuThrottledMs;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Timings timings;
 
     public Map<String, String> additionalFiles = Map.of();
 
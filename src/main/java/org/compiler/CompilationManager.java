@@ -2,75 +2,149 @@ package org.compiler;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import org.eclipse.jdt.internal.compiler.batch.Main;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
+import java.util.*;
 
 @ApplicationScoped
 public class CompilationManager {
-    
+
+    private static final String ENCODING = "UTF-8";
+
+    // Java 8 compliance keeps the extracted JDK_CLASSES bootclasspath usable
+    private static final Map<String, String> COMPILER_OPTIONS = Map.ofEntries(
+        Map.entry(CompilerOptions.OPTION_Compliance, CompilerOptions.VERSION_1_8),
+        Map.entry(CompilerOptions.OPTION_Source, CompilerOptions.VERSION_1_8),
+        Map.entry(CompilerOptions.OPTION_TargetPlatform, CompilerOptions.VERSION_1_8),
+        Map.entry(CompilerOptions.OPTION_Encoding, ENCODING),
+        Map.entry(CompilerOptions.OPTION_LocalVariableAttribute, CompilerOptions.DO_NOT_GENERATE),
+        Map.entry(CompilerOptions.OPTION_LineNumberAttribute, CompilerOptions.DO_NOT_GENERATE),
+        Map.entry(CompilerOptions.OPTION_SourceFileAttribute, CompilerOptions.DO_NOT_GENERATE),
+        Map.entry(CompilerOptions.OPTION_Process_Annotations, CompilerOptions.DISABLED)
+    );
+
     @Inject
-    FileManager fileManager;
+    SharedNameEnvironment nameEnvironment;
 
-    public CompilationResult compile(Path sourceFile, Path workingDir) {
-        return executeCompilation(sourceFile, workingDir);
+    public Map<String, String> options() {
+        return COMPILER_OPTIONS;
     }
-    
-    private CompilationResult executeCompilation(Path sourceFile, Path workingDir) {
+
+    /**
+     * @param codeHash identifies the submission in the recorded {@link PipelineEvents.Compile} event
+     */
+    public CompilationResult compile(String codeHash, String className, String sourceCode,
+                                     Map<String, String> additionalFiles) {
+        var event = new PipelineEvents.Compile();
+        event.begin();
+        CompilationResult result = executeCompilation(className, sourceCode, additionalFiles);
+        if (event.shouldCommit()) {
+            event.snippetHash = codeHash;
+            event.className = className;
+            event.sourceBytes = sourceCode.length();
+            event.classCount = result.classes().size();
+            event.bytecodeBytes = result.classes().values().stream().mapToLong(bytes -> bytes.length).sum();
+            event.success = result.success();
+            event.commit();
+        }
+        return result;
+    }
+
+    private CompilationResult executeCompilation(String className, String sourceCode,
+                                                 Map<String, String> additionalFiles) {
         try {
-            // Use Eclipse Compiler for Java (ECJ) - works in native image
-            var outputStream = new ByteArrayOutputStream();
-            var errorStream = new ByteArrayOutputStream();
-            var out = new PrintWriter(outputStream);
-            var err = new PrintWriter(errorStream);
-            
-            // Build ECJ arguments - use lower compliance level where bootclasspath works
-            var args = new java.util.ArrayList<String>();
-            args.add("-d");
-            args.add(workingDir.toString());
-            args.add("-encoding");
-            args.add("UTF-8");
-            args.add("-source");
-            args.add("1.8");  // Use Java 8 compliance (bootclasspath supported)
-            args.add("-target");
-            args.add("1.8");
-            args.add("-nowarn");
-            args.add("-g:none");
-            args.add("-proc:none");  // Disable annotation processing
-            
-            // Use extracted JDK classes as bootclasspath (works with Java 8 compliance)
-            String jdkClasses = System.getenv("JDK_CLASSES");
-            if (jdkClasses != null && !jdkClasses.isEmpty()) {
-                args.add("-bootclasspath");
-                args.add(jdkClasses);
-            }
-            
-            args.add(sourceFile.toString());
-            
-            // Compile using ECJ
-            var compiler = new Main(out, err, false, null, null);
-            boolean success = compiler.compile(args.toArray(new String[0]));
-            
-            out.flush();
-            err.flush();
-            
-            String output = errorStream.toString(StandardCharsets.UTF_8);
-            if (output.isEmpty()) {
-                output = outputStream.toString(StandardCharsets.UTF_8);
-            }
-            
-            return new CompilationResult(
-                success && output.isEmpty() ? "OK" : output, 
-                success
+            List<ICompilationUnit> units = new ArrayList<>();
+            units.add(new CompilationUnit(sourceCode.toCharArray(), className + ".java", ENCODING));
+            Objects.requireNonNullElse(additionalFiles, Map.<String, String>of()).forEach((fileName, content) -> units.add(new CompilationUnit(
+                content.toCharArray(), fileName.endsWith(".java") ? fileName : fileName + ".java", ENCODING)));
+
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            List<CategorizedProblem> errors = new ArrayList<>();
+
+            var compiler = new Compiler(
+                nameEnvironment,
+                DefaultErrorHandlingPolicies.proceedWithAllProblems(),
+                new CompilerOptions(COMPILER_OPTIONS),
+                result -> {
+                    for (CategorizedProblem problem : Objects.requireNonNullElse(
+                            result.getProblems(), new CategorizedProblem[0])) {
+                        if (problem.isError()) {
+                            errors.add(problem);
+                        }
+                    }
+                    for (ClassFile classFile : result.getClassFiles()) {
+                        classes.put(new String(CharOperation.concatWith(classFile.getCompoundName(), '.')),
+                                classFile.getBytes());
+                    }
+                },
+                new DefaultProblemFactory(Locale.getDefault())
             );
-            
+            compiler.compile(units.toArray(new ICompilationUnit[0]));
+
+            if (!errors.isEmpty()) {
+                return new CompilationResult(formatProblems(errors, units), false, Map.of());
+            }
+            return new CompilationResult("OK", true, classes);
+
         } catch (Exception e) {
-            return new CompilationResult("Compilation error: " + e.getMessage(), false);
+            return new CompilationResult("Compilation error: " + e.getMessage(), false, Map.of());
+        }
+    }
+
+    private String formatProblems(List<CategorizedProblem> errors, List<ICompilationUnit> units) {
+        var output = new StringBuilder(256);
+        int index = 0;
+        for (CategorizedProblem problem : errors) {
+            String fileName = new String(problem.getOriginatingFileName());
+            output.append("----------\n")
+                  .append(++index).append(". ERROR in ").append(fileName)
+                  .append(" (at line ").append(problem.getSourceLineNumber()).append(")\n");
+            units.stream()
+                 .filter(unit -> fileName.equals(new String(unit.getFileName())))
+                 .findFirst()
+                 .ifPresent(unit -> appendSourceContext(output, unit.getContents(), problem));
+            output.append(problem.getMessage()).append('\n');
         }
+        output.append("----------\n")
+              .append(index).append(index == 1 ? " problem (" : " problems (")
+              .append(index).append(index == 1 ? " error)" : " errors)");
+        return output.toString();
     }
-    
-    public record CompilationResult(String output, boolean success) {}
+
+    private void appendSourceContext(StringBuilder output, char[] source, CategorizedProblem problem) {
+        int start = problem.getSourceStart();
+        int end = problem.getSourceEnd();
+        if (start < 0 || start >= source.length) {
+            return;
+        }
+        int lineStart = start;
+        while (lineStart > 0 && source[lineStart - 1] != '\n' && source[lineStart - 1] != '\r') {
+            lineStart--;
+        }
+        while (lineStart < start && Character.isWhitespace(source[lineStart])) {
+            lineStart++;
+        }
+        int lineEnd = start;
+        while (lineEnd < source.length && source[lineEnd] != '\n' && source[lineEnd] != '\r') {
+            lineEnd++;
+        }
+        output.append('\t').append(source, lineStart, lineEnd - lineStart).append("\n\t");
+        for (int i = lineStart; i < start; i++) {
+            output.append(source[i] == '\t' ? '\t' : ' ');
+        }
+        for (int i = start; i <= Math.min(end, lineEnd - 1); i++) {
+            output.append('^');
+        }
+        output.append('\n');
+    }
+
+    public record CompilationResult(String output, boolean success, Map<String, byte[]> classes) {}
 }
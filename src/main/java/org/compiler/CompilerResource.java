@@ -1,9 +1,16 @@
 package org.compiler;
 
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 @Path("/api/compiler")
 @Produces(MediaType.APPLICATION_JSON)
@@ -13,19 +20,82 @@ public final class CompilerResource {
     @Inject
     CompilerService compilerService;
 
+    @Inject
+    CacheManager cacheManager;
+
+    @Inject
+    JobManager jobManager;
+
+    @Inject
+    AdmissionController admission;
+
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response compileAndRun(CodeSnippet codeSnippet) {
-        try {
-            CodeSnippet result = compilerService.compileAndRun(codeSnippet);
-            return Response.ok(result).build();
-        } catch (Exception e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(new ErrorResponse(e.getMessage()))
+    public Uni<Response> compileAndRun(CodeSnippet codeSnippet) {
+        // Served from the event loop, the run itself waits on virtual threads
+        return Uni.createFrom().completionStage(() -> compilerService.compileAndRunAsync(codeSnippet))
+                .map(result -> Response.ok(result).build())
+                .onFailure().recoverWithItem(CompilerResource::errorResponse);
+    }
+
+    private static Response errorResponse(Throwable failure) {
+        Throwable e = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (e instanceof AdmissionRejectedException rejected) {
+            return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", rejected.retryAfterSeconds())
+                    .entity(new ErrorResponse(rejected.getMessage()))
                     .build();
         }
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+    }
+    
+    @POST
+    @Path("/jobs")
+    public Response submitJob(CodeSnippet codeSnippet) {
+        JobManager.JobStatus status;
+        try {
+            status = jobManager.submit(codeSnippet);
+        } catch (AdmissionRejectedException e) {
+            return errorResponse(e);
+        }
+        return Response.accepted(status)
+                .location(UriBuilder.fromPath("/api/compiler/jobs/{id}").build(status.id()))
+                .build();
+    }
+
+    @GET
+    @Path("/jobs/{id}")
+    public Response jobStatus(@PathParam("id") String id) {
+        return jobManager.status(id)
+                .map(status -> Response.ok(status).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Unknown job " + id))
+                        .build());
+    }
+
+    @GET
+    @Path("/jobs/{id}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<JobManager.JobEvent> jobEvents(@PathParam("id") String id) {
+        Multi<JobManager.JobEvent> events = jobManager.events(id);
+        if (events == null) {
+            throw new NotFoundException("Unknown job " + id);
+        }
+        return events;
+    }
+
+    @GET
+    @Path("/stats")
+    public StatsResponse stats() {
+        return new StatsResponse(cacheManager.statistics(), admission.statistics());
     }
     
     private record ErrorResponse(String error) {}
+
+    public record StatsResponse(CacheManager.Statistics cache, List<ConcurrencyLimiter.Statistics> admission) {}
 }
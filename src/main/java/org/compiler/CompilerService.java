@@ -1,10 +1,19 @@
 package org.compiler;
 
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.nio.file.Path;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 @ApplicationScoped
 public class CompilerService {
@@ -12,9 +21,6 @@ public class CompilerService {
     @Inject
     CacheManager cacheManager;
     
-    @Inject
-    FileManager fileManager;
-    
     @Inject
     CompilationManager compilationManager;
     
@@ -24,69 +30,195 @@ public class CompilerService {
     @Inject
     SourceCodeAnalyzer analyzer;
 
+    @Inject
+    AdmissionController admission;
+
+    @Inject
+    PipelineMetrics metrics;
+
+    @ConfigProperty(name = "compiler.execution.coalesce", defaultValue = "false")
+    boolean coalesceExecutions;
+
+    @ConfigProperty(name = "compiler.pipeline.compile-threads")
+    Optional<Integer> compileThreads;
+
+    private final SingleFlight<String, CompilationManager.CompilationResult> compilations = new SingleFlight<>();
+    private final SingleFlight<String, ExecutionManager.ExecutionResult> executions = new SingleFlight<>();
+
+    private final ExecutorService supervisors = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("compiler-run-", 0).factory());
+    private ExecutorService compilePool;
+
+    @PostConstruct
+    void init() {
+        int threads = compileThreads.orElse(Runtime.getRuntime().availableProcessors());
+        compilePool = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("compiler-ecj-", 0).daemon().factory());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        supervisors.shutdownNow();
+        compilePool.shutdownNow();
+    }
+
     public CodeSnippet compileAndRun(CodeSnippet snippet) {
-        String codeHash = analyzer.generateHash(snippet.sourceCode);
-        return processCodeSnippet(snippet, codeHash);
+        return compileAndRun(snippet, stage -> {}, OutputListener.NONE);
     }
 
-    private CodeSnippet processCodeSnippet(CodeSnippet snippet, String codeHash) {
-        var validation = analyzer.validate(snippet.sourceCode);
-        if (!validation.valid()) {
-            snippet.compilationOutput = validation.message();
-            snippet.compilationSuccess = false;
-            return snippet;
-        }
-        
-        String className = analyzer.extractClassName(snippet.sourceCode);
-        
-        Path tempDir = null;
+    /**
+     * @param stageListener notified as the submission moves from compilation to execution
+     * @param outputListener receives program output while it runs
+     */
+    public CodeSnippet compileAndRun(CodeSnippet snippet, Consumer<Stage> stageListener,
+                                     OutputListener outputListener) {
         try {
-            tempDir = fileManager.createTempDirectory();
-            return executeCompilation(snippet, className, codeHash, tempDir);
-        } catch (Exception e) {
-            snippet.compilationOutput = e.getMessage();
-            snippet.compilationSuccess = false;
-            snippet.executionSuccess = false;
-            return snippet;
-        } finally {
-            if (tempDir != null) {
-                fileManager.deleteDirectory(tempDir);
+            return compileAndRunAsync(snippet, stageListener, outputListener).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
         }
     }
 
-    private CodeSnippet executeCompilation(CodeSnippet snippet, String className, 
-                                          String codeHash, Path workingDir) {
-        Path sourceFile = workingDir.resolve(className + ".java");
-        fileManager.writeFile(sourceFile, snippet.sourceCode);
-        
+    public CompletableFuture<CodeSnippet> compileAndRunAsync(CodeSnippet snippet) {
+        return compileAndRunAsync(snippet, stage -> {}, OutputListener.NONE);
+    }
+
+    /**
+     * Runs the pipeline without blocking the caller, which may be an event loop thread.
+     * Validation, admission and process
+     * supervision run on virtual threads, ECJ runs on the compile pool, so slow programs never
+     * hold a compile thread and a burst of compilations never delays running programs.
+     * Completes exceptionally with {@link AdmissionRejectedException} when a stage is saturated.
+     */
+    public CompletableFuture<CodeSnippet> compileAndRunAsync(CodeSnippet snippet, Consumer<Stage> stageListener,
+                                                            OutputListener outputListener) {
+        var timings = new Timings();
+        snippet.timings = timings;
+        var event = new PipelineEvents.Submission();
+        event.begin();
+        return CompletableFuture.supplyAsync(
+                () -> timings.time(Timings.Step.VALIDATE, () -> analyzer.validate(snippet.sourceCode)), supervisors)
+            .thenComposeAsync(validation -> {
+                if (!validation.valid()) {
+                    snippet.compilationOutput = validation.message();
+                    snippet.compilationSuccess = false;
+                    return CompletableFuture.completedFuture(finish(snippet, PipelineMetrics.Outcome.INVALID, event));
+                }
+                String className = analyzer.extractClassName(snippet.sourceCode);
+                String codeHash = analyzer.generateHash(snippet, compilationManager.options());
+                event.snippetHash = codeHash;
+                return compile(snippet, className, codeHash, stageListener, timings)
+                    .thenApplyAsync(result -> execute(snippet, className, codeHash, result, stageListener,
+                        outputListener, timings), supervisors)
+                    .thenApply(done -> finish(done, outcomeOf(done), event));
+            }, supervisors)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                if (cause instanceof AdmissionRejectedException rejected) {
+                    finish(snippet, PipelineMetrics.Outcome.REJECTED, event);
+                    throw rejected;
+                }
+                snippet.compilationOutput = cause.getMessage();
+                snippet.compilationSuccess = false;
+                snippet.executionSuccess = false;
+                return finish(snippet, PipelineMetrics.Outcome.FAILED, event);
+            });
+    }
+
+    private static PipelineMetrics.Outcome outcomeOf(CodeSnippet snippet) {
+        if (!snippet.compilationSuccess) {
+            return PipelineMetrics.Outcome.COMPILE_ERROR;
+        }
+        return snippet.executionSuccess ? PipelineMetrics.Outcome.SUCCEEDED : PipelineMetrics.Outcome.FAILED;
+    }
+
+    private CodeSnippet finish(CodeSnippet snippet, PipelineMetrics.Outcome outcome, PipelineEvents.Submission event) {
+        snippet.timings.finish();
+        metrics.record(snippet.timings);
+        metrics.count(outcome);
+        event.sourceBytes = snippet.sourceCode == null ? 0 : snippet.sourceCode.length();
+        event.outcome = outcome.tag();
+        event.commit();
+        return snippet;
+    }
+
+    private CompletableFuture<CompilationManager.CompilationResult> compile(CodeSnippet snippet, String className,
+                                                                            String codeHash,
+                                                                            Consumer<Stage> stageListener,
+                                                                            Timings timings) {
+        stageListener.accept(Stage.COMPILING);
         long compilationStart = System.nanoTime();
-        CompilationManager.CompilationResult compilationResult;
-        
-        Optional<byte[]> cachedBytecode = cacheManager.get(codeHash);
-        if (cachedBytecode.isPresent()) {
-            Path classFile = workingDir.resolve(className + ".class");
-            fileManager.writeBytes(classFile, cachedBytecode.get());
-            compilationResult = new CompilationManager.CompilationResult("Cached", true);
+        CompletableFuture<CompilationManager.CompilationResult> compiled;
+
+        Optional<byte[]> cachedBundle =
+            timings.time(Timings.Step.CACHE_LOOKUP, () -> cacheManager.get(codeHash));
+        if (cachedBundle.isPresent()) {
+            compiled = CompletableFuture.completedFuture(new CompilationManager.CompilationResult(
+                "Cached", true, ClassBundle.unpack(cachedBundle.get())));
         } else {
-            compilationResult = compilationManager.compile(sourceFile, workingDir);
-            if (compilationResult.success()) {
-                Path classFile = workingDir.resolve(className + ".class");
-                cacheManager.put(codeHash, fileManager.readBytes(classFile));
-            }
+            compiled = compilations.submit(codeHash, () -> {
+                // Queue for admission here, on a virtual thread, so compile threads never wait
+                ConcurrencyLimiter.Permit permit = admission.compile().acquire();
+                timings.record(Timings.Step.COMPILE_QUEUE, permit.waitNanos());
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        var result = timings.time(Timings.Step.COMPILE, () ->
+                            compilationManager.compile(codeHash, className, snippet.sourceCode,
+                                snippet.additionalFiles));
+                        if (result.success()) {
+                            cacheManager.put(codeHash, ClassBundle.pack(result.classes()));
+                        }
+                        return result;
+                    } finally {
+                        permit.release();
+                    }
+                }, compilePool);
+            });
         }
-        
-        snippet.compilationTimeMs = (System.nanoTime() - compilationStart) / 1_000_000;
-        snippet.compilationOutput = compilationResult.output();
-        snippet.compilationSuccess = compilationResult.success();
-        
+
+        return compiled.thenApply(compilationResult -> {
+            snippet.compilationTimeMs = (System.nanoTime() - compilationStart) / 1_000_000;
+            snippet.compilationOutput = compilationResult.output();
+            snippet.compilationSuccess = compilationResult.success();
+            return compilationResult;
+        });
+    }
+
+    private CodeSnippet execute(CodeSnippet snippet, String className, String codeHash,
+                                CompilationManager.CompilationResult compilationResult,
+                                Consumer<Stage> stageListener, OutputListener outputListener, Timings timings) {
         if (snippet.compilationSuccess && analyzer.hasMainMethod(snippet.sourceCode)) {
+            stageListener.accept(Stage.EXECUTING);
             long execStart = System.nanoTime();
-            ExecutionManager.ExecutionResult result = executionManager.execute(className, workingDir);
-            snippet.executionTimeMs = (System.nanoTime() - execStart) / 1_000_000;
+            var classes = compilationResult.classes();
+            // Streamed runs keep their own execution so every listener sees the output
+            boolean coalesce = coalesceExecutions && outputListener == OutputListener.NONE
+                && analyzer.isDeterministic(snippet.sourceCode);
+            ExecutionManager.ExecutionResult result = coalesce
+                ? executions.run(codeHash + ':' + executionManager.effectiveTimeout(snippet.timeoutSeconds),
+                    () -> execute(codeHash, className, classes, snippet.timeoutSeconds, OutputListener.NONE, timings))
+                : execute(codeHash, className, classes, snippet.timeoutSeconds, outputListener, timings);
+            // Prefer the time measured around main inside the executor, which leaves out JVM startup;
+            // a coalesced follower has no steps of its own and reports the time it waited
+            Long userCodeNanos = timings.steps().get(Timings.Step.USER_CODE);
+            long executionNanos = userCodeNanos != null ? userCodeNanos : System.nanoTime() - execStart;
+            snippet.executionTimeMs = executionNanos / 1_000_000;
             snippet.executionOutput = result.output();
+            snippet.stdout = result.streams().stdout();
+            snippet.stderr = result.streams().stderr();
+            snippet.outputTruncated = result.streams().truncated();
+            snippet.outputBytesDropped = result.streams().bytesDropped();
             snippet.executionSuccess = result.success();
-            snippet.peakMemoryBytes = result.memoryUsed();
+            ResourceUsage usage = result.usage();
+            snippet.peakMemoryBytes = Math.max(0, usage.peakRssBytes());
+            snippet.peakHeapBytes = usage.peakHeapBytes() < 0 ? null : usage.peakHeapBytes();
+            snippet.cpuUserTimeMs = usage.userCpuNanos() < 0 ? null : usage.userCpuNanos() / 1_000_000;
+            snippet.cpuSystemTimeMs = usage.systemCpuNanos() < 0 ? null : usage.systemCpuNanos() / 1_000_000;
+            snippet.oomKilled = usage.oomKilled();
+            snippet.cpuThrottledMs = usage.throttledNanos() < 0 ? null : usage.throttledNanos() / 1_000_000;
         } else if (snippet.compilationSuccess) {
             snippet.executionOutput = "No main method";
             snippet.executionSuccess = true;
@@ -94,7 +226,30 @@ public class CompilerService {
             snippet.executionOutput = "Compilation failed";
             snippet.executionSuccess = false;
         }
-        
+
         return snippet;
     }
+
+    private ExecutionManager.ExecutionResult execute(String codeHash, String className, Map<String, byte[]> classes,
+                                                     Integer timeoutSeconds, OutputListener outputListener,
+                                                     Timings timings) {
+        ConcurrencyLimiter.Permit permit = admission.execute().acquire();
+        timings.record(Timings.Step.EXECUTE_QUEUE, permit.waitNanos());
+        ExecutionManager.ExecutionResult result = null;
+        try {
+            result = executionManager.execute(codeHash, className, classes, timeoutSeconds, outputListener, timings);
+            return result;
+        } finally {
+            if (result != null && result.timedOut()) {
+                // Running into its own time limit says nothing about the load on the host
+                permit.releaseWithoutSample();
+            } else {
+                permit.release(result != null && (result.usage().oomKilled() || result.launchFailed()));
+            }
+        }
+    }
+
+    public enum Stage {
+        QUEUED, COMPILING, EXECUTING, COMPLETED, FAILED
+    }
 }
@@ -0,0 +1,186 @@
+package org.compiler;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps how many calls of one pipeline stage run at once. Callers over the limit wait in a bounded
+ * FIFO queue; when the queue is full, or a caller has waited too long, it is rejected right away
+ * so that load beyond capacity is shed instead of piling up. The limit can be changed at runtime,
+ * either directly or by an attached {@link GradientLimit} that adjusts it after every call.
+ */
+public final class ConcurrencyLimiter {
+
+    private final String name;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private int limit;
+    private int inFlight;
+    private int queued;
+    private double averageServiceNanos;
+    private volatile GradientLimit adaptiveLimit;
+
+    public ConcurrencyLimiter(String name, int limit, int maxQueue, Duration maxWait) {
+        this.name = name;
+        this.limit = Math.max(1, limit);
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Waits for a slot and returns it as a permit to release when the stage is done.
+     *
+     * @throws AdmissionRejectedException when the queue is full or the wait exceeds the maximum
+     */
+    public Permit acquire() {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                if (queued >= maxQueue) {
+                    throw reject();
+                }
+                queued++;
+                try {
+                    long remaining = maxWaitNanos;
+                    while (inFlight >= limit) {
+                        if (remaining <= 0) {
+                            throw reject();
+                        }
+                        remaining = available.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject();
+                } finally {
+                    queued--;
+                }
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        long waited = System.nanoTime() - start;
+        admitted.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        return new Permit(waited);
+    }
+
+    public void setLimit(int newLimit) {
+        lock.lock();
+        try {
+            limit = Math.max(1, newLimit);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the limit follow the service times and outcomes reported by released permits.
+     */
+    public void setAdaptiveLimit(GradientLimit adaptiveLimit) {
+        this.adaptiveLimit = adaptiveLimit;
+        setLimit(adaptiveLimit.limit());
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Statistics statistics() {
+        lock.lock();
+        try {
+            long count = admitted.get();
+            return new Statistics(name, limit, inFlight, queued, maxQueue, count, rejected.get(),
+                    count == 0 ? 0 : totalWaitNanos.get() / count / 1_000_000.0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long serviceNanos, boolean sampled, boolean overloaded) {
+        GradientLimit adaptive = sampled ? adaptiveLimit : null;
+        lock.lock();
+        try {
+            // Smoothed service time feeds the Retry-After estimate
+            averageServiceNanos = averageServiceNanos == 0
+                    ? serviceNanos : averageServiceNanos * 0.9 + serviceNanos * 0.1;
+            if (adaptive != null) {
+                // Queued callers count as demand, so a backlog lets the limit probe upwards
+                limit = adaptive.onSample(serviceNanos, inFlight + queued, overloaded);
+                available.signalAll();
+            } else {
+                available.signal();
+            }
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private AdmissionRejectedException reject() {
+        rejected.incrementAndGet();
+        double drainNanos = averageServiceNanos * (queued + 1) / limit;
+        long retryAfter = Math.max(1, (long) Math.ceil(drainNanos / TimeUnit.SECONDS.toNanos(1)));
+        return new AdmissionRejectedException(name, retryAfter);
+    }
+
+    public final class Permit {
+
+        private final long waitNanos;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long waitNanos) {
+            this.waitNanos = waitNanos;
+        }
+
+        public long waitNanos() {
+            return waitNanos;
+        }
+
+        public void release() {
+            release(false);
+        }
+
+        /**
+         * @param overloaded whether the call failed in a way that points at too much concurrency
+         */
+        public void release(boolean overloaded) {
+            if (released.compareAndSet(false, true)) {
+                ConcurrencyLimiter.this.release(System.nanoTime() - startNanos, true, overloaded);
+            }
+        }
+
+        /**
+         * Frees the slot without reporting the call to the adaptive limit, for calls whose
+         * duration says nothing about the stage's capacity.
+         */
+        public void releaseWithoutSample() {
+            if (released.compareAndSet(false, true)) {
+                ConcurrencyLimiter.this.release(System.nanoTime() - startNanos, false, false);
+            }
+        }
+    }
+
+    public record Statistics(String stage, int limit, int inFlight, int queued, int maxQueue,
+                             long admitted, long rejected, double averageWaitMs) {}
+}
@@ -0,0 +1,135 @@
+package org.compiler;
+
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel that enforces execution deadlines. Scheduling and cancelling are constant
+ * time and lock-free, one thread advances the wheel each tick and fires whatever expired, so
+ * thousands of in-flight runs cost a bucket entry each instead of a blocked thread or a heap
+ * operation. Deadlines fire up to one tick late.
+ */
+@ApplicationScoped
+public class DeadlineScheduler {
+
+    private static final int WHEEL_SIZE = 512;
+
+    @ConfigProperty(name = "compiler.deadline.tick", defaultValue = "50ms")
+    Duration tick;
+
+    private final List<Queue<Deadline>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Queue<Deadline> scheduled = new ConcurrentLinkedQueue<>();
+    private long tickNanos;
+    private long startNanos;
+    private volatile boolean running = true;
+    private Thread worker;
+
+    @PostConstruct
+    void init() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        tickNanos = Math.max(1_000_000L, tick.toNanos());
+        startNanos = System.nanoTime();
+        worker = Thread.ofPlatform().daemon().name("deadline-wheel").start(this::advance);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Runs {@code action} on the wheel thread once {@code delay} has passed unless the returned
+     * deadline is cancelled first. Actions must not block.
+     */
+    public Deadline schedule(Duration delay, Runnable action) {
+        var deadline = new Deadline(System.nanoTime() + delay.toNanos(), action);
+        scheduled.add(deadline);
+        return deadline;
+    }
+
+    private void advance() {
+        long ticks = 0;
+        while (running) {
+            long nextTick = startNanos + (ticks + 1) * tickNanos;
+            long sleep;
+            while (running && (sleep = nextTick - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+            }
+            placeScheduled(ticks);
+            expire(wheel.get((int) (ticks % WHEEL_SIZE)), System.nanoTime());
+            ticks++;
+        }
+    }
+
+    private void placeScheduled(long currentTick) {
+        Deadline deadline;
+        while ((deadline = scheduled.poll()) != null) {
+            if (deadline.cancelled) {
+                continue;
+            }
+            long due = Math.max(currentTick, (deadline.dueNanos - startNanos + tickNanos - 1) / tickNanos);
+            deadline.rounds = (due - currentTick) / WHEEL_SIZE;
+            wheel.get((int) (due % WHEEL_SIZE)).add(deadline);
+        }
+    }
+
+    private static void expire(Queue<Deadline> bucket, long now) {
+        Iterator<Deadline> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Deadline deadline = iterator.next();
+            if (deadline.cancelled) {
+                iterator.remove();
+            } else if (deadline.rounds > 0) {
+                deadline.rounds--;
+            } else if (deadline.dueNanos <= now) {
+                iterator.remove();
+                deadline.fire();
+            }
+        }
+    }
+
+    public static final class Deadline {
+
+        private final long dueNanos;
+        private final Runnable action;
+        private volatile boolean cancelled;
+        private volatile boolean fired;
+        private long rounds;
+
+        private Deadline(long dueNanos, Runnable action) {
+            this.dueNanos = dueNanos;
+            this.action = action;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean hasFired() {
+            return fired;
+        }
+
+        private void fire() {
+            fired = true;
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // One failing action must not stop the wheel
+            }
+        }
+    }
+}
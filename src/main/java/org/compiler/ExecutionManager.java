@@ -1,101 +1,406 @@
 package org.compiler;
 
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ApplicationScoped
 public class ExecutionManager {
 
-    private static final long EXEC_TIMEOUT_SECONDS = 30;
     private static final int MAX_MEMORY_MB = 256;
     private static final int STACK_SIZE_KB = 1024;
+    private static final String LAUNCHER_REPORT = ".launcher-report";
+    // Output still in the pipes when the program exits is read well within this
+    private static final Duration DRAIN_GRACE = Duration.ofMillis(500);
 
-    public ExecutionResult execute(String className, Path workingDir) {
-        return runJavaProcess(className, workingDir);
+    static final List<String> JVM_OPTIONS = List.of(
+        "-Xshare:on",
+        "-XX:+UseSerialGC",
+        "-XX:TieredStopAtLevel=1",
+        "-Xms8m",
+        "-Xmx" + MAX_MEMORY_MB + "m",
+        "-Xss" + STACK_SIZE_KB + "k",
+        "-XX:MaxMetaspaceSize=16m",
+        "-XX:MetaspaceSize=8m",
+        "-XX:+DisableAttachMechanism",
+        "-Djava.awt.headless=true",
+        "-Dstdout.encoding=UTF-8",
+        "-Dstderr.encoding=UTF-8"
+    );
+
+    @ConfigProperty(name = "compiler.execution.timeout", defaultValue = "30s")
+    Duration defaultTimeout;
+
+    @ConfigProperty(name = "compiler.execution.max-timeout", defaultValue = "60s")
+    Duration maxTimeout;
+
+    @ConfigProperty(name = "compiler.execution.sample-interval", defaultValue = "20ms")
+    Duration sampleInterval;
+
+    @ConfigProperty(name = "compiler.output.max-bytes", defaultValue = "262144")
+    int maxOutputBytes;
+
+    @ConfigProperty(name = "compiler.output.rate-limit", defaultValue = "1048576")
+    long outputRateLimit;
+
+    @ConfigProperty(name = "compiler.output.rate-burst", defaultValue = "4194304")
+    long outputRateBurst;
+
+    @Inject
+    RunnerPool runnerPool;
+
+    @Inject
+    FileManager fileManager;
+
+    @Inject
+    SharedNameEnvironment nameEnvironment;
+
+    @Inject
+    DeadlineScheduler deadlineScheduler;
+
+    @Inject
+    CgroupManager cgroupManager;
+
+    private Path launcherClassPath;
+
+    void onStart(@Observes StartupEvent event) {
+        launcherClassPath = fileManager.extractClasses(ProgramLauncher.class);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (launcherClassPath != null) {
+            fileManager.deleteDirectory(launcherClassPath);
+        }
+    }
+
+    public ExecutionResult execute(String className, Map<String, byte[]> classes) {
+        return execute(null, className, classes, null, OutputListener.NONE, new Timings());
+    }
+
+    /**
+     * @param codeHash identifies the submission in the recorded {@link PipelineEvents.Execute} event
+     * @param timeoutSeconds requested time limit, the configured default when {@code null} and never
+     *                       more than the configured maximum
+     * @param listener receives output as the program produces it, the result still carries all of it
+     * @param timings receives the durations of the execution steps
+     */
+    public ExecutionResult execute(String codeHash, String className, Map<String, byte[]> classes,
+                                   Integer timeoutSeconds, OutputListener listener, Timings timings) {
+        var event = new PipelineEvents.Execute();
+        event.begin();
+        var capture = new OutputCapture(maxOutputBytes, outputRateBurst, outputRateLimit, listener);
+        Duration timeout = effectiveTimeout(timeoutSeconds);
+        boolean pooled = runnerPool.isEnabled();
+        ExecutionResult result = pooled
+                ? runPooled(className, classes, timeout, capture, timings)
+                : runForked(className, classes, timeout, capture, timings);
+        if (event.shouldCommit()) {
+            event.snippetHash = codeHash;
+            event.className = className;
+            event.pooled = pooled;
+            event.success = result.success();
+            event.outputBytes = capture.totalBytes();
+            event.peakRssBytes = result.usage().peakRssBytes();
+            event.commit();
+        }
+        return result;
+    }
+
+    private ExecutionResult runForked(String className, Map<String, byte[]> classes, Duration timeout,
+                                      OutputCapture capture, Timings timings) {
+        Path workingDir = null;
+        try {
+            workingDir = timings.time(Timings.Step.TEMP_DIR, fileManager::createTempDirectory);
+            long writeStart = System.nanoTime();
+            fileManager.writeClassFiles(workingDir, classes);
+            timings.recordSince(Timings.Step.WRITE_CLASSES, writeStart);
+            return runJavaProcess(className, workingDir, timeout, capture, timings);
+        } finally {
+            if (workingDir != null) {
+                long cleanupStart = System.nanoTime();
+                fileManager.deleteDirectory(workingDir);
+                timings.recordSince(Timings.Step.CLEANUP, cleanupStart);
+            }
+        }
+    }
+
+    public Duration effectiveTimeout(Integer timeoutSeconds) {
+        if (timeoutSeconds == null || timeoutSeconds <= 0) {
+            return defaultTimeout.compareTo(maxTimeout) > 0 ? maxTimeout : defaultTimeout;
+        }
+        Duration requested = Duration.ofSeconds(timeoutSeconds);
+        return requested.compareTo(maxTimeout) > 0 ? maxTimeout : requested;
+    }
+
+    private ExecutionResult runPooled(String className, Map<String, byte[]> classes, Duration timeout,
+                                      OutputCapture capture, Timings timings) {
+        try {
+            RunnerPool.RunOutcome outcome = runnerPool.run(className, classes, timeout, capture, timings);
+            if (outcome.timedOut()) {
+                return buildResult("Timeout", false, capture, ResourceUsage.UNKNOWN);
+            }
+            if (outcome.launchFailed()) {
+                return launchFailure(outcome.failure(), capture);
+            }
+            return buildResult(outcome.failure(), outcome.exitCode() == 0, capture, outcome.usage());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return buildResult(e.getMessage(), false, capture, ResourceUsage.UNKNOWN);
+        }
     }
     
-    private ExecutionResult runJavaProcess(String className, Path workingDir) {
-        var output = new StringBuilder(512);
-        
+    private ExecutionResult runJavaProcess(String className, Path workingDir, Duration timeout,
+                                           OutputCapture capture, Timings timings) {
         try {
             List<String> command = buildExecutionCommand(className, workingDir);
             
             ProcessBuilder processBuilder = new ProcessBuilder(command);
             processBuilder.directory(workingDir.toFile());
-            processBuilder.redirectErrorStream(true);
-            
-            Map<String, String> env = processBuilder.environment();
-            env.remove("JAVA_TOOL_OPTIONS");
-            env.remove("_JAVA_OPTIONS");
-            env.remove("JDK_JAVA_OPTIONS");
             
-            Process process = processBuilder.start();
+            sanitizeEnvironment(processBuilder.environment());
             
-            try (var reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8), 8192)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (isValidOutputLine(line)) {
-                        output.append(line).append('\n');
-                    }
+            long spawnStart = System.nanoTime();
+            Process process;
+            try {
+                process = processBuilder.start();
+            } catch (IOException e) {
+                return launchFailure(e.getMessage(), capture);
+            }
+            Optional<CgroupManager.Leaf> cgroup = cgroupManager.place(process, "run-" + process.pid());
+            timings.recordSince(Timings.Step.SPAWN, spawnStart);
+            Optional<CgroupManager.Snapshot> before = cgroup.map(CgroupManager.Leaf::snapshot);
+            Set<ProcessHandle> started = ConcurrentHashMap.newKeySet();
+            long deadlineNanos = System.nanoTime() + timeout.toNanos();
+            DeadlineScheduler.Deadline deadline = deadlineScheduler.schedule(timeout, () -> {
+                killAll(process, cgroup, started);
+                // Closing may wait for a pump, keep it off the timer thread
+                Thread.startVirtualThread(() -> closePipes(process));
+            });
+            var usage = new AtomicReference<>(ResourceUsage.UNKNOWN);
+            try {
+                Thread stdoutPump = startPump(process, process.getInputStream(), OutputListener.Channel.STDOUT, capture);
+                Thread stderrPump = startPump(process, process.getErrorStream(), OutputListener.Channel.STDERR, capture);
+                Thread sampler = startSampler(process, usage, started);
+                long runStart = System.nanoTime();
+                int exitCode = process.waitFor();
+                // Decided when the program ended, not after the drain
+                boolean timedOut = deadline.hasFired();
+                timings.recordSince(Timings.Step.RUN, runStart);
+                sampler.interrupt();
+                // Whatever still runs was left in the background and may hold the pipes open
+                killAll(process, cgroup, started);
+                long drainStart = System.nanoTime();
+                long drainEnd = drainStart + Math.min(DRAIN_GRACE.toNanos(), Math.max(0, deadlineNanos - drainStart));
+                if (!joinUntil(stdoutPump, drainEnd) | !joinUntil(stderrPump, drainEnd)) {
+                    // A background process out of reach of the kill still holds a pipe
+                    closePipes(process);
+                }
+                timings.recordSince(Timings.Step.OUTPUT_DRAIN, drainStart);
+                recordLauncherReport(workingDir.resolve(LAUNCHER_REPORT), spawnStart, timings);
+                ResourceUsage measured = cgroup.isPresent()
+                        ? usage.get().withCgroup(before.get(), cgroup.get().snapshot()) : usage.get();
+                if (timedOut) {
+                    return buildResult("Timeout", false, capture, measured);
                 }
+                return buildResult(null, exitCode == 0, capture, measured);
+            } finally {
+                deadline.cancel();
+                if (process.isAlive()) {
+                    killAll(process, cgroup, started);
+                }
+                cgroup.ifPresent(leaf -> leaf.removeAfter(process));
             }
             
-            boolean completedInTime = process.waitFor(EXEC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-            
-            if (!completedInTime) {
-                process.destroyForcibly();
-                return new ExecutionResult("Timeout", false, 0L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return buildResult(e.getMessage(), false, capture, ResourceUsage.UNKNOWN);
+        }
+    }
+
+    /**
+     * Splits the run into JVM startup and user code from the timestamps {@link ProgramLauncher}
+     * wrote. There is no report when the program was killed.
+     */
+    private void recordLauncherReport(Path report, long spawnStart, Timings timings) {
+        if (!fileManager.exists(report)) {
+            return;
+        }
+        try {
+            String[] fields = fileManager.readFile(report).trim().split(" ");
+            long mainStart = Long.parseLong(fields[0]);
+            timings.record(Timings.Step.JVM_STARTUP, Math.max(0, mainStart - spawnStart));
+            timings.record(Timings.Step.USER_CODE, Long.parseLong(fields[1]));
+        } catch (RuntimeException e) {
+            // Overwritten by the program, reported without the split
+        }
+    }
+
+    /**
+     * Kills the process together with anything it started, children first so that none of them is
+     * re-parented and left running.
+     */
+    static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Also kills processes that were re-parented away from the tree: every descendant the sampler
+     * saw and, with cgroups, the rest of the leaf.
+     */
+    private static void killAll(Process process, Optional<CgroupManager.Leaf> cgroup, Set<ProcessHandle> started) {
+        destroyTree(process);
+        started.forEach(ProcessHandle::destroyForcibly);
+        cgroup.ifPresent(CgroupManager.Leaf::kill);
+    }
+
+    private static void closePipes(Process process) {
+        for (InputStream pipe : List.of(process.getInputStream(), process.getErrorStream())) {
+            try {
+                pipe.close();
+            } catch (IOException e) {
+                // Already closed
             }
-            
-            int exitCode = process.exitValue();
-            long memoryUsed = estimateMemoryUsage();
-            
-            String result = output.isEmpty() ? "OK" : output.toString().trim();
-            return new ExecutionResult(result, exitCode == 0, memoryUsed);
-            
-        } catch (IOException | InterruptedException e) {
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean joinUntil(Thread thread, long endNanos) throws InterruptedException {
+        return thread.join(Duration.ofNanos(Math.max(0, endNanos - System.nanoTime())));
+    }
+
+    /**
+     * Polls procfs while the process runs. Peak RSS and CPU times only grow, so the last sample
+     * before exit is the figure reported; what the program does in its final interval is missed.
+     * Every descendant seen is remembered so it can be killed even after it was re-parented.
+     */
+    private Thread startSampler(Process process, AtomicReference<ResourceUsage> usage, Set<ProcessHandle> started) {
+        return Thread.ofVirtual().name("usage-sampler").start(() -> {
+            while (process.isAlive()) {
+                process.descendants().forEach(started::add);
+                ResourceUsage sample = ResourceUsage.sample(process.pid());
+                if (sample != ResourceUsage.UNKNOWN) {
+                    usage.set(sample);
+                }
+                try {
+                    Thread.sleep(sampleInterval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies one process stream into the capture on a virtual thread, killing the process when it
+     * exceeds its output budget. The pump ends when the process closes the stream.
+     */
+    private static Thread startPump(Process process, InputStream stream, OutputListener.Channel channel,
+                                    OutputCapture capture) {
+        return Thread.ofVirtual().name("output-pump-" + channel.name().toLowerCase(Locale.ROOT)).start(() -> {
+            var buffer = new byte[8192];
+            try (stream) {
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    if (!capture.write(channel, buffer, 0, read)) {
+                        destroyTree(process);
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // The process went away, whatever was captured is reported
             }
-            return new ExecutionResult(e.getMessage(), false, 0L);
+        });
+    }
+
+    private ExecutionResult launchFailure(String message, OutputCapture capture) {
+        ExecutionResult result = buildResult(message, false, capture, ResourceUsage.UNKNOWN);
+        return new ExecutionResult(result.output(), false, false, true, result.usage(), result.streams());
+    }
+
+    /**
+     * @param message replaces the program output when set, unless the program printed something
+     *                before failing
+     */
+    private ExecutionResult buildResult(String message, boolean success, OutputCapture capture,
+                                        ResourceUsage usage) {
+        OutputCapture.Result captured = capture.result();
+        var output = filterOutput(captured.combined());
+
+        String result;
+        if (usage.oomKilled()) {
+            result = output.append("Memory limit exceeded").toString().trim();
+            success = false;
+        } else if (captured.rateExceeded()) {
+            result = output.append("Output limit exceeded").toString().trim();
+            success = false;
+        } else if ("Timeout".equals(message) || (message != null && output.isEmpty())) {
+            result = message;
+        } else {
+            result = output.isEmpty() ? "OK" : output.toString().trim();
         }
+        var streams = new OutputCapture.Result(result, filterOutput(captured.stdout()).toString(),
+            filterOutput(captured.stderr()).toString(),
+            captured.truncated(), captured.bytesDropped(), captured.rateExceeded());
+        return new ExecutionResult(result, success, "Timeout".equals(message), false, usage, streams);
     }
     
     private List<String> buildExecutionCommand(String className, Path workingDir) {
-        return List.of(
-            "java",
-            "-Xshare:on",
-            "-XX:+UseSerialGC",
-            "-XX:TieredStopAtLevel=1",
-            "-Xms8m",
-            "-Xmx" + MAX_MEMORY_MB + "m",
-            "-Xss" + STACK_SIZE_KB + "k",
-            "-XX:MaxMetaspaceSize=16m",
-            "-XX:MetaspaceSize=8m",
-            "-XX:+DisableAttachMechanism",
-            "-Djava.awt.headless=true",
-            "-cp", workingDir.toString(),
-            className
-        );
+        List<String> command = new ArrayList<>(JVM_OPTIONS.size() + 8);
+        command.add("java");
+        command.addAll(JVM_OPTIONS);
+        command.addAll(cgroupManager.jvmOptions());
+        command.add("-cp");
+        // The launcher comes first so that submitted classes cannot replace it
+        var classPath = new StringJoiner(File.pathSeparator)
+                .add(launcherClassPath.toString())
+                .add(workingDir.toString());
+        nameEnvironment.libraryPaths().forEach(library -> classPath.add(library.toString()));
+        command.add(classPath.toString());
+        command.add(ProgramLauncher.class.getName());
+        command.add(workingDir.resolve(LAUNCHER_REPORT).toString());
+        command.add(className);
+        return command;
+    }
+
+    static void sanitizeEnvironment(Map<String, String> env) {
+        env.remove("JAVA_TOOL_OPTIONS");
+        env.remove("_JAVA_OPTIONS");
+        env.remove("JDK_JAVA_OPTIONS");
     }
     
+    private StringBuilder filterOutput(String text) {
+        var output = new StringBuilder(text.length());
+        text.lines()
+            .filter(this::isValidOutputLine)
+            .forEach(line -> output.append(line).append('\n'));
+        return output;
+    }
+
     private boolean isValidOutputLine(String line) {
         return !line.startsWith("Picked up") &&
                !line.contains("JAVA_TOOL_OPTIONS") &&
                !line.contains("WARNING:");
     }
     
-    private long estimateMemoryUsage() {
-        return 150_000L; // 150KB baseline
-    }
-    
-    public record ExecutionResult(String output, boolean success, long memoryUsed) {}
+    /**
+     * @param output filtered, interleaved program output or a status message, shown to users
+     * @param launchFailed whether no executor JVM could be started, a sign the host is out of resources
+     * @param usage measured peak memory and CPU time of the run
+     * @param streams the separately captured stdout and stderr
+     */
+    public record ExecutionResult(String output, boolean success, boolean timedOut, boolean launchFailed,
+                                  ResourceUsage usage, OutputCapture.Result streams) {}
 }
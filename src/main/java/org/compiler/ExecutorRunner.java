@@ -0,0 +1,348 @@
+package org.compiler;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Entry point of a pooled executor JVM.
+ * <p>
+ * The class is copied out of the application and launched on its own class path, so it must only
+ * depend on the JDK. It reads a single run request from stdin, loads the submitted bytecode,
+ * invokes {@code main} and streams the program output back as frames on stdout. The program runs
+ * in this JVM and can reach the protocol streams, so the parent never hands it a second request.
+ */
+public final class ExecutorRunner {
+
+    static final int FRAME_READY = 'R';
+    static final int FRAME_STDOUT = 'O';
+    static final int FRAME_STDERR = 'E';
+    static final int FRAME_EXIT = 'X';
+    // Longest output frame; the parent rejects anything larger as a protocol violation
+    static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 50;
+    private static final Path PROC_SELF = Path.of("/proc/self");
+
+    private final ClassLoader libraryLoader;
+    private final DataInputStream requests;
+    private final DataOutputStream frames;
+
+    private boolean running;
+    private volatile long userCodeStart;
+    private PrintStream userOut;
+    private PrintStream userErr;
+
+    private ExecutorRunner(ClassLoader libraryLoader, InputStream requests, OutputStream frames) {
+        this.libraryLoader = libraryLoader;
+        this.requests = new DataInputStream(new BufferedInputStream(requests, OUTPUT_BUFFER_SIZE));
+        this.frames = new DataOutputStream(new BufferedOutputStream(frames, OUTPUT_BUFFER_SIZE));
+    }
+
+    /**
+     * @param args class path entries of the approved libraries visible to submitted programs
+     */
+    public static void main(String[] args) throws IOException {
+        var libraries = new URL[args.length];
+        for (int i = 0; i < args.length; i++) {
+            libraries[i] = Path.of(args[i]).toUri().toURL();
+        }
+        var libraryLoader = new URLClassLoader(libraries, ClassLoader.getPlatformClassLoader());
+        var runner = new ExecutorRunner(libraryLoader,
+                new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out));
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Runtime.getRuntime().addShutdownHook(new Thread(runner::onSystemExit, "runner-exit"));
+        var flusher = new Thread(runner::flushPeriodically, "runner-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+        runner.serve();
+    }
+
+    private void serve() throws IOException {
+        writeFrame(FRAME_READY, null, 0, 0);
+        Map<String, byte[]> classes;
+        String mainClass;
+        try {
+            int count = requests.readInt();
+            classes = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String name = requests.readUTF();
+                byte[] bytes = new byte[requests.readInt()];
+                requests.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            mainClass = requests.readUTF();
+        } catch (EOFException e) {
+            return;
+        }
+        run(mainClass, classes);
+    }
+
+    private void run(String mainClass, Map<String, byte[]> classes) throws IOException {
+        var group = new ThreadGroup("user");
+        var stdout = new FrameOutputStream(FRAME_STDOUT);
+        var stderr = new FrameOutputStream(FRAME_STDERR);
+        resetUsage();
+        startRun(stdout, stderr);
+
+        int[] exitCode = {0};
+        var loader = new BytecodeClassLoader(libraryLoader, classes);
+        var mainThread = new Thread(group, () -> exitCode[0] = invokeMain(loader, mainClass), "main");
+        mainThread.setContextClassLoader(loader);
+        userCodeStart = System.nanoTime();
+        mainThread.start();
+        joinQuietly(mainThread);
+        joinNonDaemonThreads(group);
+        long userCodeNanos = System.nanoTime() - userCodeStart;
+
+        if (!finishRun()) {
+            return;
+        }
+        userOut.flush();
+        userErr.flush();
+        stdout.close();
+        stderr.close();
+        sendExit(exitCode[0], userCodeNanos);
+        // Stay alive until the parent has read this JVM's usage from procfs, it destroys the process
+        while (requests.read() != -1) {
+            // Nothing else is sent
+        }
+    }
+
+    private int invokeMain(ClassLoader loader, String mainClass) {
+        try {
+            Class<?> type = Class.forName(mainClass, true, loader);
+            Method main = type.getDeclaredMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                System.err.println("Error: main method is not static in class " + mainClass);
+                return 1;
+            }
+            main.setAccessible(true);
+            main.invoke(null, (Object) new String[0]);
+            return 0;
+        } catch (InvocationTargetException e) {
+            printUncaught(e.getCause());
+            return 1;
+        } catch (ExceptionInInitializerError e) {
+            printUncaught(e);
+            return 1;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Error: Could not find or load main class " + mainClass);
+            System.err.println("Caused by: " + e);
+            return 1;
+        }
+    }
+
+    private static void printUncaught(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            StackTraceElement[] trace = current.getStackTrace();
+            int end = 0;
+            while (end < trace.length && !isRunnerFrame(trace[end])) {
+                end++;
+            }
+            current.setStackTrace(Arrays.copyOf(trace, end));
+        }
+        System.err.print("Exception in thread \"main\" ");
+        error.printStackTrace();
+    }
+
+    private static boolean isRunnerFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.startsWith("jdk.internal.reflect.") ||
+               className.equals("java.lang.reflect.Method") ||
+               className.startsWith(ExecutorRunner.class.getName());
+    }
+
+    private static void joinQuietly(Thread thread) {
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                // Keep waiting, the parent enforces the deadline by killing this JVM
+            }
+        }
+    }
+
+    private static void joinNonDaemonThreads(ThreadGroup group) {
+        boolean joined = true;
+        while (joined) {
+            joined = false;
+            Thread[] threads = new Thread[Math.max(16, group.activeCount() * 2)];
+            int count = group.enumerate(threads, true);
+            for (int i = 0; i < count; i++) {
+                if (!threads[i].isDaemon() && threads[i].isAlive()) {
+                    joinQuietly(threads[i]);
+                    joined = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts measuring the run: clears the RSS high-water mark and the heap pool peaks left by the
+     * JVM startup.
+     */
+    private void resetUsage() {
+        try {
+            Files.writeString(PROC_SELF.resolve("clear_refs"), "5");
+        } catch (IOException | SecurityException e) {
+            // The reported peak then also covers the JVM startup
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Sum of the heap pools' peaks. The pools peak at different times, objects move from young to
+     * old generation in between, so this is an upper bound of the real heap high-water mark.
+     */
+    private static long readPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private void onSystemExit() {
+        if (!finishRun()) {
+            return;
+        }
+        userOut.flush();
+        userErr.flush();
+        try {
+            sendExit(-1, System.nanoTime() - userCodeStart);
+        } catch (IOException e) {
+            // The parent treats a missing exit frame as a crash
+        }
+    }
+
+    /**
+     * Pushes buffered program output to the parent at a fixed interval so that it can be streamed
+     * while the program is still running.
+     */
+    private void flushPeriodically() {
+        while (true) {
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            PrintStream out;
+            PrintStream err;
+            synchronized (this) {
+                if (!running) {
+                    continue;
+                }
+                out = userOut;
+                err = userErr;
+            }
+            out.flush();
+            err.flush();
+        }
+    }
+
+    private synchronized void startRun(OutputStream stdout, OutputStream stderr) {
+        userOut = new PrintStream(new BufferedOutputStream(stdout, OUTPUT_BUFFER_SIZE), false, StandardCharsets.UTF_8);
+        userErr = new PrintStream(new BufferedOutputStream(stderr, OUTPUT_BUFFER_SIZE), false, StandardCharsets.UTF_8);
+        System.setOut(userOut);
+        System.setErr(userErr);
+        running = true;
+    }
+
+    private synchronized boolean finishRun() {
+        boolean wasRunning = running;
+        running = false;
+        return wasRunning;
+    }
+
+    /**
+     * An exit code of -1 means the program called {@code System.exit} and the JVM is going down,
+     * the parent then reads the real status from the process. The frame also carries an upper bound
+     * of the peak heap of the run and the wall time from starting {@code main} until the program's
+     * last non-daemon thread ended. The program can write the same frames, so the parent reads RSS
+     * and CPU time from procfs itself and only uses these figures within what it measured.
+     */
+    private synchronized void sendExit(int exitCode, long userCodeNanos) throws IOException {
+        frames.writeByte(FRAME_EXIT);
+        frames.writeInt(exitCode);
+        frames.writeLong(readPeakHeap());
+        frames.writeLong(userCodeNanos);
+        frames.flush();
+    }
+
+    private synchronized void writeFrame(int type, byte[] bytes, int offset, int length) throws IOException {
+        frames.writeByte(type);
+        if (type != FRAME_READY) {
+            frames.writeInt(length);
+            frames.write(bytes, offset, length);
+        }
+        frames.flush();
+    }
+
+    private final class FrameOutputStream extends OutputStream {
+
+        private final int type;
+        private volatile boolean closed;
+
+        FrameOutputStream(int type) {
+            this.type = type;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            // Large writes bypass the print stream's buffer, split them into frames of bounded size
+            while (length > 0 && !closed) {
+                int chunk = Math.min(length, OUTPUT_BUFFER_SIZE);
+                writeFrame(type, bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+    }
+
+    private static final class BytecodeClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        BytecodeClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
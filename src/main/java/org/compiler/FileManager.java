@@ -6,6 +6,7 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.Comparator;
+import java.util.Map;
 
 @ApplicationScoped
 public class FileManager {
@@ -13,10 +14,14 @@ public class FileManager {
     private static long tempDirCounter = 0;
 
     public Path createTempDirectory() {
+        var event = new PipelineEvents.FileOperation();
+        event.begin();
         try {
             String baseTempDir = System.getProperty("java.io.tmpdir");
             Path tempDir = Paths.get(baseTempDir, "jc" + System.nanoTime() + "_" + (tempDirCounter++));
-            return Files.createDirectory(tempDir);
+            Path created = Files.createDirectory(tempDir);
+            commit(event, "create-directory", created, 0);
+            return created;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -54,7 +59,53 @@ public class FileManager {
         }
     }
 
+    public void createDirectories(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void writeClassFiles(Path directory, Map<String, byte[]> classes) {
+        var event = new PipelineEvents.FileOperation();
+        event.begin();
+        long bytes = 0;
+        for (var entry : classes.entrySet()) {
+            Path classFile = directory.resolve(entry.getKey().replace('.', File.separatorChar) + ".class");
+            createDirectories(classFile.getParent());
+            writeBytes(classFile, entry.getValue());
+            bytes += entry.getValue().length;
+        }
+        commit(event, "write-classes", directory, bytes);
+    }
+
+    /**
+     * Copies the class file of {@code type} and its nest members into a new temporary directory, so
+     * the class can be launched in a separate JVM with that directory as its class path.
+     */
+    public Path extractClasses(Class<?> type) {
+        Path directory = createTempDirectory();
+        for (Class<?> member : type.getNestMembers()) {
+            String fileName = member.getName().substring(member.getPackageName().length() + 1) + ".class";
+            try (InputStream in = member.getResourceAsStream(fileName)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing class file " + fileName);
+                }
+                Path target = directory.resolve(member.getPackageName().replace('.', File.separatorChar))
+                    .resolve(fileName);
+                createDirectories(target.getParent());
+                writeBytes(target, in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return directory;
+    }
+
     public void deleteDirectory(Path directory) {
+        var event = new PipelineEvents.FileOperation();
+        event.begin();
         try {
             if (Files.exists(directory)) {
                 Files.walk(directory)
@@ -70,6 +121,16 @@ public class FileManager {
         } catch (IOException e) {
             // Ignore cleanup errors
         }
+        commit(event, "delete-directory", directory, 0);
+    }
+
+    private static void commit(PipelineEvents.FileOperation event, String operation, Path path, long bytes) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = path.toString();
+            event.bytes = bytes;
+            event.commit();
+        }
     }
 
     public boolean exists(Path file) {
@@ -0,0 +1,108 @@
+package org.compiler;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps an always-on Flight Recorder recording of the last few minutes, pipeline events included,
+ * so that a latency spike can be examined after the fact by dumping the ring to a file.
+ * <p>
+ * Events carrying the process environment, system properties and JVM arguments are left out of
+ * the ring, as they may hold secrets.
+ */
+@ApplicationScoped
+public class FlightRecording {
+
+    private static final Logger LOG = Logger.getLogger(FlightRecording.class);
+
+    private static final List<String> SENSITIVE_EVENTS =
+            List.of("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    @ConfigProperty(name = "compiler.jfr.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "compiler.jfr.settings", defaultValue = "default")
+    String settings;
+
+    @ConfigProperty(name = "compiler.jfr.max-age", defaultValue = "10m")
+    Duration maxAge;
+
+    @ConfigProperty(name = "compiler.jfr.max-size", defaultValue = "67108864")
+    long maxSize;
+
+    private volatile Recording recording;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            var ring = new Recording(Configuration.getConfiguration(settings));
+            ring.setName("compiler");
+            SENSITIVE_EVENTS.forEach(ring::disable);
+            ring.setToDisk(true);
+            ring.setMaxAge(maxAge);
+            ring.setMaxSize(maxSize);
+            ring.start();
+            recording = ring;
+        } catch (IOException | ParseException | RuntimeException e) {
+            LOG.warnf("Flight Recorder is unavailable, pipeline events are not recorded: %s", e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        Recording ring = recording;
+        if (ring != null) {
+            ring.close();
+        }
+    }
+
+    /**
+     * Writes what the ring currently holds to a new temporary file, which the caller deletes.
+     * Empty when the recording is not running.
+     */
+    public Optional<Path> dump() {
+        Recording ring = recording;
+        if (ring == null) {
+            return Optional.empty();
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile("compiler-", ".jfr");
+            ring.dump(file);
+            return Optional.of(file);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Left for the temp directory cleanup
+        }
+    }
+}
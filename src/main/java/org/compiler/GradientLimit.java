@@ -0,0 +1,71 @@
+package org.compiler;
+
+/**
+ * Concurrency limit that follows measured latency, after the gradient algorithm used by adaptive
+ * concurrency limiters. A short-term latency average is compared against a long-term one: while
+ * they agree the limit grows by a queue allowance of {@code sqrt(limit)}, when recent samples get
+ * slower than the tolerance allows the limit shrinks in proportion. Runs that fail because the
+ * host is out of resources, OOM kills and executor JVMs that could not be started, back the limit
+ * off multiplicatively.
+ */
+public final class GradientLimit {
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 500;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+
+    /**
+     * @param tolerance how much slower recent samples may be than the long-term average before
+     *                  the limit is reduced
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = tolerance;
+        this.estimatedLimit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * Records one completed call and returns the new limit.
+     *
+     * @param rttNanos service time of the call, without the time it spent queued for a slot
+     * @param demand calls running or waiting for a slot when this one completed
+     * @param dropped whether the call failed in a way that signals overload
+     */
+    public synchronized int onSample(long rttNanos, int demand, boolean dropped) {
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF);
+            return (int) estimatedLimit;
+        }
+        if (shortRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+        }
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+        if (longRtt / shortRtt > 2) {
+            // Load dropped off, let the baseline follow instead of growing without bound
+            longRtt *= 0.95;
+        }
+        if (demand < estimatedLimit / 2) {
+            // Not enough traffic to tell whether a higher limit would be safe
+            return (int) estimatedLimit;
+        }
+        double gradient = Math.clamp(tolerance * longRtt / shortRtt, 0.5, 1.0);
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.clamp(estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+        return (int) estimatedLimit;
+    }
+
+    public synchronized int limit() {
+        return (int) estimatedLimit;
+    }
+}
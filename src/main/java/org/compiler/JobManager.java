@@ -0,0 +1,272 @@
+package org.compiler;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs submissions in the background so HTTP requests return as soon as a job is accepted.
+ * Clients poll the job or subscribe to its events: stage transitions, program output as it is
+ * produced and the final result. Running jobs are held until they finish, up to the job limit,
+ * beyond which submissions are rejected. Finished jobs move to a bounded store and expire a while
+ * after they finished.
+ * <p>
+ * Each subscriber has a bounded queue of pending output. When a client reads too slowly the
+ * program is held back for up to the stall timeout, after which output for that client is dropped
+ * and counted; the final result always carries the complete output.
+ */
+@ApplicationScoped
+public class JobManager {
+
+    @ConfigProperty(name = "compiler.jobs.max-jobs", defaultValue = "1000")
+    long maxJobs;
+
+    @ConfigProperty(name = "compiler.jobs.ttl", defaultValue = "10m")
+    Duration ttl;
+
+    @ConfigProperty(name = "compiler.jobs.stream-buffer", defaultValue = "256")
+    int streamBuffer;
+
+    @ConfigProperty(name = "compiler.jobs.stream-stall-timeout", defaultValue = "5s")
+    Duration streamStallTimeout;
+
+    @Inject
+    CompilerService compilerService;
+
+    private final Map<String, Job> running = new ConcurrentHashMap<>();
+    private Cache<String, Job> finished;
+
+    @PostConstruct
+    void init() {
+        finished = Caffeine.newBuilder()
+            .maximumSize(maxJobs)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    /**
+     * @throws AdmissionRejectedException when the job limit is taken by running jobs
+     */
+    public JobStatus submit(CodeSnippet snippet) {
+        var job = new Job(UUID.randomUUID().toString());
+        synchronized (running) {
+            if (running.size() >= maxJobs) {
+                throw new AdmissionRejectedException("jobs", 1);
+            }
+            running.put(job.id, job);
+        }
+        compilerService.compileAndRunAsync(snippet, job::advance, job::output).whenComplete((result, error) -> {
+            if (error == null) {
+                job.finish(CompilerService.Stage.COMPLETED, result);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                snippet.compilationOutput = cause.getMessage();
+                job.finish(CompilerService.Stage.FAILED, snippet);
+            }
+            // Stored before it leaves the running map so pollers never miss it
+            finished.put(job.id, job);
+            running.remove(job.id);
+        });
+        return job.status();
+    }
+
+    public long size() {
+        return running.size() + finished.estimatedSize();
+    }
+
+    public Optional<JobStatus> status(String id) {
+        return Optional.ofNullable(find(id)).map(Job::status);
+    }
+
+    /**
+     * Emits the current stage followed by every later event, completing after the final result.
+     * Output produced before the subscription is only available in the result. Returns
+     * {@code null} for unknown jobs.
+     */
+    public Multi<JobEvent> events(String id) {
+        Job job = find(id);
+        if (job == null) {
+            return null;
+        }
+        return Multi.createFrom().emitter(emitter -> {
+            var subscriber = new Subscriber(emitter);
+            emitter.onRequest(requested -> subscriber.drain());
+            emitter.onTermination(() -> {
+                job.subscribers.remove(subscriber);
+                subscriber.drain();
+            });
+            job.subscribe(subscriber);
+        });
+    }
+
+    private Job find(String id) {
+        Job job = running.get(id);
+        return job != null ? job : finished.getIfPresent(id);
+    }
+
+    private final class Job {
+
+        private final String id;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private CompilerService.Stage stage = CompilerService.Stage.QUEUED;
+        private CodeSnippet result;
+
+        Job(String id) {
+            this.id = id;
+        }
+
+        synchronized JobStatus status() {
+            return new JobStatus(id, stage, result);
+        }
+
+        synchronized void subscribe(Subscriber subscriber) {
+            JobStatus current = status();
+            subscriber.enqueue(new JobEvent(id, current.stage(), null, null, current.result(), null));
+            if (!current.isDone()) {
+                subscribers.add(subscriber);
+            }
+        }
+
+        void advance(CompilerService.Stage next) {
+            publish(next, null);
+        }
+
+        void finish(CompilerService.Stage next, CodeSnippet snippet) {
+            publish(next, snippet);
+        }
+
+        void output(OutputListener.Channel channel, String text) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offerOutput(id, channel, text);
+            }
+        }
+
+        private synchronized void publish(CompilerService.Stage next, CodeSnippet snippet) {
+            stage = next;
+            result = snippet;
+            var event = new JobEvent(id, next, null, null, snippet, null);
+            subscribers.forEach(subscriber -> subscriber.enqueue(event));
+            if (status().isDone()) {
+                subscribers.clear();
+            }
+        }
+    }
+
+    private final class Subscriber {
+
+        private final MultiEmitter<? super JobEvent> emitter;
+        private final Deque<JobEvent> pending = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition drained = lock.newCondition();
+        private int pendingOutput;
+        private long droppedChars;
+        private boolean stalled;
+
+        Subscriber(MultiEmitter<? super JobEvent> emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(JobEvent event) {
+            lock.lock();
+            try {
+                pending.add(event);
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        /**
+         * Waits for the client to catch up while its queue is full, then gives up and drops the
+         * chunk. After one such stall the subscriber drops output without waiting until its queue
+         * has drained, so a stuck client holds the program back only once. The number of dropped
+         * characters is reported with the next delivered chunk.
+         */
+        void offerOutput(String jobId, OutputListener.Channel channel, String text) {
+            lock.lock();
+            try {
+                if (stalled && pendingOutput > 0) {
+                    droppedChars += text.length();
+                    return;
+                }
+                stalled = false;
+                long remaining = streamStallTimeout.toNanos();
+                while (pendingOutput >= streamBuffer && remaining > 0 && !emitter.isCancelled()) {
+                    remaining = drained.awaitNanos(remaining);
+                }
+                if (pendingOutput >= streamBuffer || emitter.isCancelled()) {
+                    stalled = true;
+                    droppedChars += text.length();
+                    return;
+                }
+                pending.add(new JobEvent(jobId, null, channel, text, null, droppedChars > 0 ? droppedChars : null));
+                pendingOutput++;
+                droppedChars = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                droppedChars += text.length();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        void drain() {
+            lock.lock();
+            try {
+                if (emitter.isCancelled()) {
+                    pending.clear();
+                    pendingOutput = 0;
+                }
+                while (!pending.isEmpty() && emitter.requested() > 0) {
+                    JobEvent event = pending.poll();
+                    if (event.output() != null) {
+                        pendingOutput--;
+                    }
+                    emitter.emit(event);
+                    if (event.result() != null) {
+                        emitter.complete();
+                    }
+                }
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public record JobStatus(String id, CompilerService.Stage stage, CodeSnippet result) {
+
+        public boolean isDone() {
+            return stage == CompilerService.Stage.COMPLETED || stage == CompilerService.Stage.FAILED;
+        }
+    }
+
+    /**
+     * A stage transition, a chunk of program output or, once the job is done, its final result.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record JobEvent(String id, CompilerService.Stage stage, OutputListener.Channel channel,
+                           String output, CodeSnippet result, Long droppedChars) {}
+}
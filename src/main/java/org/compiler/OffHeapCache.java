@@ -0,0 +1,202 @@
+package org.compiler;
+
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap L2 tier of {@link CacheManager}. Bundles live in fixed-size blocks of a single slab
+ * allocated from a shared {@link Arena}, so cache capacity does not add to GC work. Each entry
+ * counts its hits; eviction sweeps entries oldest first, halving counts as it passes, and drops
+ * the first one that has gone cold.
+ */
+@ApplicationScoped
+public class OffHeapCache {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    @ConfigProperty(name = "compiler.cache.offheap.max-bytes", defaultValue = "33554432")
+    long maxBytes;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private Arena arena;
+    private MemorySegment slab;
+    private int[] freeBlocks;
+    private int freeCount;
+
+    @PostConstruct
+    void init() {
+        int blocks = (int) Math.min(Integer.MAX_VALUE, maxBytes / BLOCK_SIZE);
+        freeBlocks = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            freeBlocks[i] = blocks - 1 - i;
+        }
+        freeCount = blocks;
+        if (blocks > 0) {
+            arena = Arena.ofShared();
+            slab = arena.allocate((long) blocks * BLOCK_SIZE, BLOCK_SIZE);
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            freeCount = 0;
+            if (arena != null) {
+                arena.close();
+                arena = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return freeBlocks.length > 0;
+    }
+
+    /**
+     * Copies the bundle back on-heap and returns it together with its hit count, which the caller
+     * uses to decide on promotion.
+     */
+    public Optional<Hit> get(String codeHash) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(codeHash);
+            if (entry == null || arena == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            byte[] bundle = new byte[entry.length];
+            int copied = 0;
+            for (int block : entry.blocks) {
+                int length = Math.min(BLOCK_SIZE, entry.length - copied);
+                MemorySegment.copy(slab, ValueLayout.JAVA_BYTE, (long) block * BLOCK_SIZE, bundle, copied, length);
+                copied += length;
+            }
+            hits.incrementAndGet();
+            return Optional.of(new Hit(bundle, entry.frequency.incrementAndGet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String codeHash, byte[] bundle) {
+        int needed = (bundle.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (needed == 0 || needed > freeBlocks.length / 2) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (arena == null || entries.containsKey(codeHash)) {
+                return;
+            }
+            while (freeCount < needed && evictOne()) {
+                evictions.incrementAndGet();
+            }
+            var blocks = new int[needed];
+            for (int i = 0; i < needed; i++) {
+                blocks[i] = freeBlocks[--freeCount];
+                int offset = i * BLOCK_SIZE;
+                MemorySegment.copy(bundle, offset, slab, ValueLayout.JAVA_BYTE, (long) blocks[i] * BLOCK_SIZE,
+                        Math.min(BLOCK_SIZE, bundle.length - offset));
+            }
+            entries.put(codeHash, new Entry(blocks, bundle.length));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String codeHash) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(codeHash);
+            if (entry != null) {
+                release(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.values().forEach(this::release);
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Statistics statistics() {
+        lock.readLock().lock();
+        try {
+            long usedBytes = (long) (freeBlocks.length - freeCount) * BLOCK_SIZE;
+            return new Statistics(entries.size(), usedBytes, (long) freeBlocks.length * BLOCK_SIZE,
+                    hits.get(), misses.get(), evictions.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean evictOne() {
+        while (!entries.isEmpty()) {
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+                if (entry.frequency.get() == 0) {
+                    iterator.remove();
+                    release(entry);
+                    return true;
+                }
+                entry.frequency.set(entry.frequency.get() >> 1);
+            }
+        }
+        return false;
+    }
+
+    private void release(Entry entry) {
+        for (int block : entry.blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    private static final class Entry {
+
+        private final int[] blocks;
+        private final int length;
+        // Hits since the bundle was stored, halved by every eviction sweep that passes it
+        private final AtomicInteger frequency = new AtomicInteger();
+
+        Entry(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+
+    public record Hit(byte[] bundle, int frequency) {}
+
+    public record Statistics(long entries, long usedBytes, long capacityBytes,
+                             long hits, long misses, long evictions) {}
+}
@@ -0,0 +1,190 @@
+package org.compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded capture of a program's stdout and stderr. Each stream, and their interleaving, keeps the
+ * first and last bytes of its output up to the configured size and only counts what falls in
+ * between, so a runaway program cannot grow the heap. Writers also draw from an output budget that
+ * refills at a fixed rate; once it is exhausted {@link #write} returns {@code false} and the caller
+ * kills the program. The listener is called outside the capture lock, so a listener that blocks
+ * only holds back the writer of its own stream.
+ */
+public final class OutputCapture {
+
+    private final HeadTailBuffer combined;
+    private final HeadTailBuffer stdout;
+    private final HeadTailBuffer stderr;
+    private final ChunkDecoder stdoutDecoder;
+    private final ChunkDecoder stderrDecoder;
+    private final OutputListener listener;
+    private final long burstBytes;
+    private final long bytesPerSecond;
+    private final long startNanos = System.nanoTime();
+    private long totalBytes;
+    private boolean rateExceeded;
+
+    /**
+     * @param maxBytes bytes kept per stream
+     * @param burstBytes output allowed before the sustained rate applies
+     * @param bytesPerSecond sustained output rate, zero or less disables the budget
+     */
+    public OutputCapture(int maxBytes, long burstBytes, long bytesPerSecond, OutputListener listener) {
+        this.combined = new HeadTailBuffer(maxBytes);
+        this.stdout = new HeadTailBuffer(maxBytes);
+        this.stderr = new HeadTailBuffer(maxBytes);
+        this.stdoutDecoder = new ChunkDecoder(listener != OutputListener.NONE);
+        this.stderrDecoder = new ChunkDecoder(listener != OutputListener.NONE);
+        this.listener = listener;
+        this.burstBytes = burstBytes;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @return {@code false} once the program has written more than its output budget allows
+     */
+    public boolean write(OutputListener.Channel channel, byte[] bytes, int offset, int length) {
+        String text;
+        boolean withinBudget;
+        synchronized (this) {
+            combined.write(bytes, offset, length);
+            if (channel == OutputListener.Channel.STDOUT) {
+                stdout.write(bytes, offset, length);
+                text = stdoutDecoder.decode(bytes, offset, length);
+            } else {
+                stderr.write(bytes, offset, length);
+                text = stderrDecoder.decode(bytes, offset, length);
+            }
+            totalBytes += length;
+            if (bytesPerSecond > 0 && totalBytes > burstBytes) {
+                double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+                if (totalBytes > burstBytes + elapsedSeconds * bytesPerSecond) {
+                    rateExceeded = true;
+                }
+            }
+            withinBudget = !rateExceeded;
+        }
+        if (text != null) {
+            listener.onOutput(channel, text);
+        }
+        return withinBudget;
+    }
+
+    /**
+     * Bytes the program wrote to both streams, including those that were not kept.
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized Result result() {
+        return new Result(combined.toString(), stdout.toString(), stderr.toString(),
+                stdout.dropped() + stderr.dropped() > 0, stdout.dropped() + stderr.dropped(), rateExceeded);
+    }
+
+    /**
+     * @param combined both streams in the order they were written
+     */
+    public record Result(String combined, String stdout, String stderr,
+                         boolean truncated, long bytesDropped, boolean rateExceeded) {}
+
+    /**
+     * Keeps the first half of its capacity as written and the most recent bytes in a ring.
+     */
+    private static final class HeadTailBuffer {
+
+        private final byte[] head;
+        private final byte[] tail;
+        private int headLength;
+        private long tailWritten;
+        private long total;
+
+        HeadTailBuffer(int capacity) {
+            this.head = new byte[capacity / 2];
+            this.tail = new byte[capacity - capacity / 2];
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            total += length;
+            int toHead = Math.min(length, head.length - headLength);
+            System.arraycopy(bytes, offset, head, headLength, toHead);
+            headLength += toHead;
+            offset += toHead;
+            length -= toHead;
+            if (length == 0 || tail.length == 0) {
+                return;
+            }
+            // Only the last tail.length bytes of the chunk can survive
+            int skip = Math.max(0, length - tail.length);
+            tailWritten += skip;
+            offset += skip;
+            length -= skip;
+            while (length > 0) {
+                int position = (int) (tailWritten % tail.length);
+                int chunk = Math.min(length, tail.length - position);
+                System.arraycopy(bytes, offset, tail, position, chunk);
+                tailWritten += chunk;
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        long dropped() {
+            return Math.max(0, total - headLength - Math.min(tailWritten, tail.length));
+        }
+
+        @Override
+        public String toString() {
+            int tailLength = (int) Math.min(tailWritten, tail.length);
+            byte[] kept = new byte[headLength + tailLength];
+            System.arraycopy(head, 0, kept, 0, headLength);
+            int start = (int) ((tailWritten - tailLength) % Math.max(1, tail.length));
+            int firstPart = Math.min(tailLength, tail.length - start);
+            System.arraycopy(tail, start, kept, headLength, firstPart);
+            System.arraycopy(tail, 0, kept, headLength + firstPart, tailLength - firstPart);
+            long dropped = dropped();
+            if (dropped == 0) {
+                return new String(kept, StandardCharsets.UTF_8);
+            }
+            return new String(kept, 0, headLength, StandardCharsets.UTF_8) +
+                   "\n... [" + dropped + " bytes truncated] ...\n" +
+                   new String(kept, headLength, tailLength, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Decodes chunks for the listener, carrying over multi-byte characters split across chunk
+     * boundaries.
+     */
+    private static final class ChunkDecoder {
+
+        private final boolean enabled;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer pending = ByteBuffer.allocate(0);
+
+        ChunkDecoder(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the complete characters decoded so far, {@code null} when there are none
+         */
+        String decode(byte[] bytes, int offset, int length) {
+            if (!enabled) {
+                return null;
+            }
+            ByteBuffer in = ByteBuffer.allocate(pending.remaining() + length)
+                    .put(pending).put(bytes, offset, length).flip();
+            CharBuffer out = CharBuffer.allocate(in.remaining());
+            decoder.decode(in, out, false);
+            pending = in;
+            return out.position() > 0 ? out.flip().toString() : null;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.compiler;
+
+/**
+ * Receives program output while it runs. Calls come from the thread driving the execution, so a
+ * listener that blocks slows the program down instead of buffering its output without bound.
+ */
+@FunctionalInterface
+public interface OutputListener {
+
+    OutputListener NONE = (channel, text) -> {};
+
+    void onOutput(Channel channel, String text);
+
+    enum Channel {
+        STDOUT, STDERR
+    }
+}
@@ -0,0 +1,346 @@
+package org.compiler;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Optional on-disk tier below {@link CacheManager}: an append-only segment file of class bundles,
+ * read through a memory mapping and indexed in memory by content hash. The index is rebuilt in the
+ * background at startup, so warm state survives restarts. Several instances may share the
+ * directory: appends and compactions are serialised with a lock file and each instance picks up
+ * records appended by the others before writing.
+ * <p>
+ * Record layout: magic, key length, key, bundle length, bundle, CRC32C of the bundle.
+ */
+@ApplicationScoped
+public class PersistentCache {
+
+    private static final Logger LOG = Logger.getLogger(PersistentCache.class);
+
+    private static final int RECORD_MAGIC = 0x4A434231;
+    private static final int RECORD_OVERHEAD = 4 * Integer.BYTES;
+    private static final String SEGMENT_FILE = "bundles.seg";
+    private static final String LOCK_FILE = "bundles.lock";
+
+    @ConfigProperty(name = "compiler.cache.disk.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "compiler.cache.disk.path", defaultValue = "${java.io.tmpdir}/javacompiler-cache")
+    Path directory;
+
+    @ConfigProperty(name = "compiler.cache.disk.max-bytes", defaultValue = "268435456")
+    long maxBytes;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "persistent-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile boolean loaded;
+    private volatile Segment segment;
+    private FileChannel lockChannel;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                Files.createDirectories(directory);
+                lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = lockChannel.lock();
+                try {
+                    refresh();
+                } finally {
+                    lock.release();
+                }
+                loaded = true;
+            } catch (IOException | UncheckedIOException e) {
+                LOG.warnf(e, "Persistent cache at %s is unavailable", directory);
+            }
+        });
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        writer.shutdown();
+        try {
+            Segment current = segment;
+            if (current != null) {
+                current.channel().close();
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            // Ignore cleanup errors
+        }
+    }
+
+    public Optional<byte[]> get(String codeHash) {
+        if (!loaded) {
+            return Optional.empty();
+        }
+        Location location = index.get(codeHash);
+        Segment current = segment;
+        if (location == null || current == null || location.generation() != current.generation()) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        try {
+            byte[] bundle = new byte[location.length()];
+            current.mapping(location.offset() + location.length()).get((int) location.offset(), bundle);
+            hits.incrementAndGet();
+            return Optional.of(bundle);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Appends the bundle in the background; callers never wait on disk I/O.
+     */
+    public void put(String codeHash, byte[] bundle) {
+        if (!enabled || index.containsKey(codeHash)) {
+            return;
+        }
+        writer.execute(() -> {
+            if (!loaded) {
+                return;
+            }
+            try {
+                FileLock lock = lockChannel.lock();
+                try {
+                    refresh();
+                    if (!index.containsKey(codeHash)) {
+                        append(codeHash, bundle);
+                    }
+                    if (segment.channel().size() > maxBytes) {
+                        compact();
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                LOG.debugf(e, "Could not persist bundle %s", codeHash);
+            }
+        });
+    }
+
+    public Statistics statistics() {
+        Segment current = segment;
+        long bytes = 0;
+        try {
+            bytes = current == null ? 0 : current.channel().size();
+        } catch (IOException e) {
+            // Report an empty segment
+        }
+        return new Statistics(enabled, loaded, index.size(), bytes, hits.get(), misses.get());
+    }
+
+    /**
+     * Reopens the segment if another instance replaced it and indexes records appended since the
+     * last scan. Must be called with the lock file held.
+     */
+    private void refresh() throws IOException {
+        Path file = directory.resolve(SEGMENT_FILE);
+        if (!Files.exists(file)) {
+            Files.createFile(file);
+        }
+        Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        Segment current = segment;
+        if (current == null || !Objects.equals(current.fileKey(), fileKey)) {
+            if (current != null) {
+                current.channel().close();
+            }
+            index.clear();
+            long generation = current == null ? 0 : current.generation() + 1;
+            current = new Segment(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE),
+                    fileKey, generation);
+            segment = current;
+        }
+        current.scanned = scan(current, current.scanned);
+    }
+
+    private long scan(Segment current, long from) throws IOException {
+        FileChannel channel = current.channel();
+        long size = channel.size();
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+        while (position + RECORD_OVERHEAD <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            int keyLength = header.getInt();
+            if (keyLength <= 0 || keyLength > 256 || position + RECORD_OVERHEAD + keyLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(keyLength + Integer.BYTES);
+            channel.read(body, position + 2 * Integer.BYTES);
+            body.flip();
+            String key = StandardCharsets.US_ASCII.decode(body.slice(0, keyLength)).toString();
+            int length = body.getInt(keyLength);
+            long dataOffset = position + 3 * Integer.BYTES + keyLength;
+            if (length < 0 || dataOffset + length + Integer.BYTES > size) {
+                break;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length + Integer.BYTES);
+            channel.read(data, dataOffset);
+            var crc = new CRC32C();
+            crc.update(data.array(), 0, length);
+            if ((int) crc.getValue() != data.getInt(length)) {
+                break;
+            }
+            index.put(key, new Location(current.generation(), dataOffset, length));
+            position = dataOffset + length + Integer.BYTES;
+        }
+        if (position < size) {
+            // Torn tail from an interrupted append, records after it cannot be trusted
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    private void append(String codeHash, byte[] bundle) throws IOException {
+        Segment current = segment;
+        byte[] key = codeHash.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + key.length + bundle.length);
+        var crc = new CRC32C();
+        crc.update(bundle);
+        record.putInt(RECORD_MAGIC).putInt(key.length).put(key)
+              .putInt(bundle.length).put(bundle).putInt((int) crc.getValue())
+              .flip();
+        long position = current.scanned;
+        while (record.hasRemaining()) {
+            position += current.channel().write(record, position);
+        }
+        index.put(codeHash, new Location(current.generation(),
+                current.scanned + 3 * Integer.BYTES + key.length, bundle.length));
+        current.scanned = position;
+    }
+
+    /**
+     * Rewrites the segment keeping the most recently appended bundles that fit in half the budget,
+     * then atomically swaps it in. Other instances notice the new file on their next refresh. The
+     * kept records are written in their original order so the newest stay at the end, where the
+     * next compaction looks for them.
+     */
+    private void compact() throws IOException {
+        Segment current = segment;
+        Comparator<Map.Entry<String, Location>> byOffset = Comparator.comparingLong(entry -> entry.getValue().offset());
+        List<Map.Entry<String, Location>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(byOffset.reversed());
+
+        long budget = maxBytes / 2;
+        long selected = 0;
+        List<Map.Entry<String, Location>> kept = new ArrayList<>();
+        for (var entry : entries) {
+            long recordLength = RECORD_OVERHEAD + entry.getKey().length() + entry.getValue().length();
+            if (selected + recordLength > budget) {
+                break;
+            }
+            selected += recordLength;
+            kept.add(entry);
+        }
+        kept.sort(byOffset);
+
+        Path compacted = directory.resolve(SEGMENT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (var entry : kept) {
+                Location location = entry.getValue();
+                long position = location.offset() - 3 * Integer.BYTES - entry.getKey().length();
+                long end = location.offset() + location.length() + Integer.BYTES;
+                while (position < end) {
+                    long transferred = current.channel().transferTo(position, end - position, out);
+                    if (transferred <= 0) {
+                        throw new EOFException("Segment ends inside a record");
+                    }
+                    position += transferred;
+                }
+            }
+            out.force(true);
+        }
+        Files.move(compacted, directory.resolve(SEGMENT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        refresh();
+    }
+
+    private record Location(long generation, long offset, int length) {}
+
+    private static final class Segment {
+
+        private final FileChannel channel;
+        private final Object fileKey;
+        private final long generation;
+        private volatile MappedByteBuffer mapping;
+        private long scanned;
+
+        Segment(FileChannel channel, Object fileKey, long generation) {
+            this.channel = channel;
+            this.fileKey = fileKey;
+            this.generation = generation;
+        }
+
+        FileChannel channel() {
+            return channel;
+        }
+
+        Object fileKey() {
+            return fileKey;
+        }
+
+        long generation() {
+            return generation;
+        }
+
+        /**
+         * Returns a read-only mapping covering at least {@code end} bytes, remapping when the
+         * segment has grown past the current mapping.
+         */
+        MappedByteBuffer mapping(long end) throws IOException {
+            MappedByteBuffer current = mapping;
+            if (current == null || current.capacity() < end) {
+                synchronized (this) {
+                    current = mapping;
+                    if (current == null || current.capacity() < end) {
+                        current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        mapping = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    public record Statistics(boolean enabled, boolean loaded, long entries, long bytes, long hits, long misses) {}
+}
@@ -0,0 +1,134 @@
+package org.compiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for the compile and run pipeline. Each one is timed with
+ * {@code begin()}/{@code commit()} so its duration shows up in JDK Mission Control next to GC,
+ * I/O and thread events of the same moment.
+ */
+public final class PipelineEvents {
+
+    private static final String CATEGORY = "Java Compiler";
+
+    private PipelineEvents() {
+    }
+
+    @Name("org.compiler.Submission")
+    @Label("Submission")
+    @Description("One submission from validation to result")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Submission extends Event {
+
+        @Label("Snippet Hash")
+        public String snippetHash;
+
+        @Label("Source Size")
+        @DataAmount
+        public long sourceBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("org.compiler.CacheLookup")
+    @Label("Cache Lookup")
+    @Description("Bytecode cache lookup and the tier that served it")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class CacheLookup extends Event {
+
+        @Label("Snippet Hash")
+        public String snippetHash;
+
+        @Label("Outcome")
+        @Description("heap, off-heap, disk or miss")
+        public String outcome;
+
+        @Label("Bundle Size")
+        @DataAmount
+        public long bundleBytes;
+    }
+
+    @Name("org.compiler.Compile")
+    @Label("Compile")
+    @Description("ECJ compilation of a submission")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Compile extends Event {
+
+        @Label("Snippet Hash")
+        public String snippetHash;
+
+        @Label("Class Name")
+        public String className;
+
+        @Label("Source Size")
+        @DataAmount
+        public long sourceBytes;
+
+        @Label("Class Count")
+        public int classCount;
+
+        @Label("Bytecode Size")
+        @DataAmount
+        public long bytecodeBytes;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("org.compiler.Execute")
+    @Label("Execute")
+    @Description("Run of a compiled program in an executor JVM")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Execute extends Event {
+
+        @Label("Snippet Hash")
+        public String snippetHash;
+
+        @Label("Class Name")
+        public String className;
+
+        @Label("Pooled")
+        @Description("Whether a pre-booted executor ran the program")
+        public boolean pooled;
+
+        @Label("Success")
+        public boolean success;
+
+        @Label("Output Size")
+        @DataAmount
+        public long outputBytes;
+
+        @Label("Peak RSS")
+        @DataAmount
+        public long peakRssBytes;
+    }
+
+    @Name("org.compiler.FileOperation")
+    @Label("File Operation")
+    @Description("Work directory I/O of fork-mode runs")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class FileOperation extends Event {
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+}
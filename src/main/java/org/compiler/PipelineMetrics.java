@@ -0,0 +1,112 @@
+package org.compiler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for each pipeline step and gauges for the state of caches, queues and
+ * executors, exported in Prometheus format on {@code /metrics}.
+ */
+@ApplicationScoped
+public class PipelineMetrics {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    CacheManager cacheManager;
+
+    @Inject
+    AdmissionController admission;
+
+    @Inject
+    RunnerPool runnerPool;
+
+    @Inject
+    JobManager jobManager;
+
+    private final Map<Timings.Step, Timer> steps = new EnumMap<>(Timings.Step.class);
+    private final Map<Outcome, Counter> outcomes = new EnumMap<>(Outcome.class);
+
+    void onStart(@Observes StartupEvent event) {
+        // Meters are created up front so every series is exported from the first scrape
+        for (Timings.Step step : Timings.Step.values()) {
+            steps.put(step, Timer.builder("compiler.pipeline.step")
+                .description("Time spent in one step of the compile and run pipeline")
+                .tag("step", step.tag())
+                .publishPercentileHistogram()
+                .register(registry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, Counter.builder("compiler.submissions")
+                .description("Submissions by how they ended")
+                .tag("outcome", outcome.tag())
+                .register(registry));
+        }
+
+        Gauge.builder("compiler.cache.hit.ratio", cacheManager, cache -> cache.statistics().hitRate())
+            .description("Share of compilations served from the bytecode cache")
+            .register(registry);
+        Gauge.builder("compiler.cache.entries", cacheManager, CacheManager::size)
+            .register(registry);
+        for (ConcurrencyLimiter limiter : new ConcurrencyLimiter[] {admission.compile(), admission.execute()}) {
+            String stage = limiter.statistics().stage();
+            Gauge.builder("compiler.admission.limit", limiter, l -> l.statistics().limit())
+                .tag("stage", stage).register(registry);
+            Gauge.builder("compiler.admission.in.flight", limiter, l -> l.statistics().inFlight())
+                .tag("stage", stage).register(registry);
+            Gauge.builder("compiler.admission.queue.depth", limiter, l -> l.statistics().queued())
+                .tag("stage", stage).register(registry);
+            FunctionCounter.builder("compiler.admission.rejected", limiter, l -> l.statistics().rejected())
+                .tag("stage", stage).register(registry);
+        }
+        Gauge.builder("compiler.runners.active", runnerPool, RunnerPool::activeRunners)
+            .description("Pooled executor JVMs currently running a program")
+            .register(registry);
+        Gauge.builder("compiler.runners.idle", runnerPool, RunnerPool::idleRunners)
+            .description("Warm executor JVMs waiting for work")
+            .register(registry);
+        Gauge.builder("compiler.jobs", jobManager, JobManager::size)
+            .description("Background jobs currently kept")
+            .register(registry);
+    }
+
+    /**
+     * Adds the steps of one finished submission to the histograms.
+     */
+    public void record(Timings timings) {
+        timings.steps().forEach((step, nanos) -> {
+            Timer timer = steps.get(step);
+            if (timer != null) {
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public void count(Outcome outcome) {
+        Counter counter = outcomes.get(outcome);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    public enum Outcome {
+        INVALID, COMPILE_ERROR, SUCCEEDED, FAILED, REJECTED;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.compiler;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Entry point of a forked executor JVM, started in place of the submitted class.
+ * <p>
+ * Like {@link ExecutorRunner} it is copied out of the application and must only depend on the
+ * JDK. It records {@link System#nanoTime()} right before calling {@code main} and, from a shutdown
+ * hook, once the program is over, whether it returned, threw or called {@code System.exit}. Both
+ * are written to a report file for the parent. {@code nanoTime} reads the system-wide monotonic
+ * clock on Linux, so the parent can compare the start against its own spawn timestamp.
+ * <p>
+ * Usage: {@code ProgramLauncher <report file> <main class>}
+ */
+public final class ProgramLauncher {
+
+    private ProgramLauncher() {
+    }
+
+    public static void main(String[] args) throws Throwable {
+        Path report = Path.of(args[0]);
+        String mainClass = args[1];
+
+        Method main;
+        try {
+            Class<?> type = Class.forName(mainClass, false, ClassLoader.getSystemClassLoader());
+            main = type.getDeclaredMethod("main", String[].class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Error: Could not find or load main class " + mainClass);
+            System.err.println("Caused by: " + e);
+            System.exit(1);
+            return;
+        }
+        if (!Modifier.isStatic(main.getModifiers())) {
+            System.err.println("Error: main method is not static in class " + mainClass);
+            System.exit(1);
+            return;
+        }
+        main.setAccessible(true);
+
+        long start = System.nanoTime();
+        // Runs after the last non-daemon thread ended or on System.exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> writeReport(report, start), "launcher-report"));
+        try {
+            main.invoke(null, (Object) Arrays.copyOfRange(args, 2, args.length));
+        } catch (InvocationTargetException e) {
+            throw trimmed(e.getCause());
+        } catch (ExceptionInInitializerError e) {
+            throw trimmed(e);
+        }
+    }
+
+    private static void writeReport(Path report, long start) {
+        long end = System.nanoTime();
+        try {
+            Files.writeString(report, start + " " + (end - start));
+        } catch (IOException e) {
+            // The parent reports the run without a user-code time
+        }
+    }
+
+    /**
+     * Drops the launcher and reflection frames so the stack trace looks like a direct launch.
+     */
+    private static Throwable trimmed(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            StackTraceElement[] trace = current.getStackTrace();
+            int end = 0;
+            while (end < trace.length && !isLauncherFrame(trace[end])) {
+                end++;
+            }
+            current.setStackTrace(Arrays.copyOf(trace, end));
+        }
+        return error;
+    }
+
+    private static boolean isLauncherFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.startsWith("jdk.internal.reflect.") ||
+               className.equals("java.lang.reflect.Method") ||
+               className.equals(ProgramLauncher.class.getName());
+    }
+}
@@ -0,0 +1,61 @@
+package org.compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measured resource usage of one run. Values that could not be measured are -1.
+ *
+ * @param peakRssBytes resident set high-water mark of the executing JVM; a pooled executor's
+ *                     includes the footprint it booted with
+ * @param peakHeapBytes upper bound of the Java heap occupancy, the sum of each heap pool's peak
+ *                      capped at the peak RSS; only known for pooled runs
+ * @param oomKilled whether the kernel killed the executor for exceeding its cgroup memory limit
+ * @param throttledNanos time the executor's cgroup was held back by its CPU quota
+ */
+public record ResourceUsage(long peakRssBytes, long userCpuNanos, long systemCpuNanos, long peakHeapBytes,
+                            boolean oomKilled, long throttledNanos) {
+
+    public static final ResourceUsage UNKNOWN = new ResourceUsage(-1, -1, -1, -1);
+
+    public ResourceUsage(long peakRssBytes, long userCpuNanos, long systemCpuNanos, long peakHeapBytes) {
+        this(peakRssBytes, userCpuNanos, systemCpuNanos, peakHeapBytes, false, -1);
+    }
+
+    /**
+     * Adds what the executor's cgroup recorded between two snapshots.
+     */
+    public ResourceUsage withCgroup(CgroupManager.Snapshot before, CgroupManager.Snapshot after) {
+        return new ResourceUsage(peakRssBytes, userCpuNanos, systemCpuNanos, peakHeapBytes,
+                after.oomKilledSince(before), after.throttledNanosSince(before));
+    }
+
+    // /proc reports CPU times in USER_HZ, which Linux fixes at 100 for user space
+    private static final long NANOS_PER_TICK = 10_000_000L;
+
+    /**
+     * Reads peak RSS and CPU times of a live process from procfs, {@link #UNKNOWN} when the
+     * process is gone or procfs is not available.
+     */
+    static ResourceUsage sample(long pid) {
+        try {
+            Path proc = Path.of("/proc", Long.toString(pid));
+            long peakRss = -1;
+            for (String line : Files.readAllLines(proc.resolve("status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    peakRss = Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                    break;
+                }
+            }
+            // The command name may contain spaces, fields are counted from its closing parenthesis
+            String stat = Files.readString(proc.resolve("stat"));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            long user = Long.parseLong(fields[11]) * NANOS_PER_TICK;
+            long system = Long.parseLong(fields[12]) * NANOS_PER_TICK;
+            return new ResourceUsage(peakRss, user, system, -1);
+        } catch (IOException | RuntimeException e) {
+            return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.compiler;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a set of pre-booted executor JVMs running {@link ExecutorRunner} so that a submission only
+ * pays for loading its own classes instead of a full JVM startup.
+ * <p>
+ * Each JVM serves exactly one run and is destroyed afterwards, a replacement boots in the
+ * background. The program shares its process with the runner protocol, so anything it leaves
+ * behind must not get to see another submission. The pool does not limit concurrency itself, the
+ * execute admission limit does; runs beyond the warm JVMs boot their own.
+ */
+@ApplicationScoped
+public class RunnerPool {
+
+    @Inject
+    FileManager fileManager;
+
+    @Inject
+    SharedNameEnvironment nameEnvironment;
+
+    @Inject
+    DeadlineScheduler deadlineScheduler;
+
+    @Inject
+    CgroupManager cgroupManager;
+
+    @ConfigProperty(name = "compiler.runner.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "compiler.runner.warmup", defaultValue = "2")
+    int warmup;
+
+    private final BlockingQueue<Runner> idle = new LinkedBlockingQueue<>();
+    private final ExecutorService spawner = Executors.newSingleThreadExecutor(daemon("runner-spawner"));
+    private final AtomicInteger active = new AtomicInteger();
+    private Path runnerClassPath;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        runnerClassPath = fileManager.extractClasses(ExecutorRunner.class);
+        spawner.execute(this::replenish);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        spawner.shutdownNow();
+        Runner runner;
+        while ((runner = idle.poll()) != null) {
+            runner.destroy();
+        }
+        if (runnerClassPath != null) {
+            fileManager.deleteDirectory(runnerClassPath);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int activeRunners() {
+        return active.get();
+    }
+
+    public int idleRunners() {
+        return idle.size();
+    }
+
+    /**
+     * Program output goes to {@code capture}; the outcome only carries a failure message when the
+     * executor itself could not run the program.
+     */
+    public RunOutcome run(String mainClass, Map<String, byte[]> classes, Duration timeout,
+                          OutputCapture capture, Timings timings) throws InterruptedException {
+        active.incrementAndGet();
+        Runner runner = null;
+        try {
+            runner = idle.poll();
+            while (runner != null && !runner.process.isAlive()) {
+                runner.destroy();
+                runner = idle.poll();
+            }
+            if (runner == null) {
+                long spawnStart = System.nanoTime();
+                try {
+                    runner = spawn();
+                } catch (IOException e) {
+                    return new RunOutcome(e.getMessage(), 1, false, true, ResourceUsage.UNKNOWN);
+                }
+                timings.recordSince(Timings.Step.JVM_STARTUP, spawnStart);
+            } else {
+                timings.record(Timings.Step.JVM_STARTUP, 0);
+            }
+            long runStart = System.nanoTime();
+            RunOutcome outcome = runner.run(mainClass, classes, timeout, capture, timings);
+            timings.recordSince(Timings.Step.RUN, runStart);
+            return outcome;
+        } finally {
+            if (runner != null) {
+                long cleanupStart = System.nanoTime();
+                runner.destroy();
+                timings.recordSince(Timings.Step.CLEANUP, cleanupStart);
+            }
+            active.decrementAndGet();
+            spawner.execute(this::replenish);
+        }
+    }
+
+    private void replenish() {
+        try {
+            while (idle.size() < warmup) {
+                idle.offer(spawn());
+            }
+        } catch (IOException e) {
+            // Runners are spawned on demand when warm-up fails
+        }
+    }
+
+    private Runner spawn() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.addAll(ExecutionManager.JVM_OPTIONS);
+        command.addAll(cgroupManager.jvmOptions());
+        command.add("-cp");
+        command.add(runnerClassPath.toString());
+        command.add(ExecutorRunner.class.getName());
+        nameEnvironment.libraryPaths().forEach(library -> command.add(library.toString()));
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        ExecutionManager.sanitizeEnvironment(processBuilder.environment());
+
+        Process process = processBuilder.start();
+        var runner = new Runner(process, cgroupManager.place(process, "runner-" + process.pid()).orElse(null));
+        if (runner.input.read() != ExecutorRunner.FRAME_READY) {
+            runner.destroy();
+            throw new IOException("Executor failed to start");
+        }
+        return runner;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Runner {
+
+        private final Process process;
+        private final CgroupManager.Leaf cgroup;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+
+        Runner(Process process, CgroupManager.Leaf cgroup) {
+            this.process = process;
+            this.cgroup = cgroup;
+            this.input = new DataInputStream(new BufferedInputStream(process.getInputStream(), 8192));
+            this.output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream(), 8192));
+        }
+
+        /**
+         * The exchange with the executor runs on its own thread. A process the program left behind
+         * can keep the pipes open after the executor is killed, then the run ends at the deadline
+         * and that thread is abandoned until the pipe closes.
+         */
+        RunOutcome run(String mainClass, Map<String, byte[]> classes, Duration timeout,
+                       OutputCapture capture, Timings timings) throws InterruptedException {
+            CgroupManager.Snapshot before = cgroup == null ? null : cgroup.snapshot();
+            var exchange = new CompletableFuture<RunOutcome>();
+            var timedOut = new AtomicBoolean();
+            DeadlineScheduler.Deadline deadline = deadlineScheduler.schedule(timeout, () -> {
+                timedOut.set(true);
+                kill();
+                exchange.complete(null);
+            });
+            Thread.ofVirtual().name("runner-exchange").start(() -> {
+                try {
+                    exchange.complete(exchange(mainClass, classes, capture, timings, timedOut, before));
+                } catch (RuntimeException | Error e) {
+                    exchange.completeExceptionally(e);
+                }
+            });
+            try {
+                RunOutcome outcome = exchange.get();
+                return outcome != null
+                        ? outcome : new RunOutcome(null, 1, true, false, withCgroup(ResourceUsage.UNKNOWN, before));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw (Error) e.getCause();
+            } finally {
+                deadline.cancel();
+            }
+        }
+
+        private RunOutcome exchange(String mainClass, Map<String, byte[]> classes, OutputCapture capture,
+                                    Timings timings, AtomicBoolean timedOut, CgroupManager.Snapshot before) {
+            // CPU time of the boot, taken while the runner waits for its request
+            ResourceUsage booted = ResourceUsage.sample(process.pid());
+            long requestStart = System.nanoTime();
+            try {
+                output.writeInt(classes.size());
+                for (var entry : classes.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(entry.getValue().length);
+                    output.write(entry.getValue());
+                }
+                output.writeUTF(mainClass);
+                output.flush();
+
+                while (true) {
+                    int frame = input.read();
+                    if (frame == ExecutorRunner.FRAME_STDOUT || frame == ExecutorRunner.FRAME_STDERR) {
+                        int length = input.readInt();
+                        if (length < 0 || length > ExecutorRunner.OUTPUT_BUFFER_SIZE) {
+                            return protocolViolation(before);
+                        }
+                        byte[] chunk = new byte[length];
+                        input.readFully(chunk);
+                        var channel = frame == ExecutorRunner.FRAME_STDOUT
+                                ? OutputListener.Channel.STDOUT : OutputListener.Channel.STDERR;
+                        if (!capture.write(channel, chunk, 0, chunk.length)) {
+                            // Over the output budget, stop the program
+                            kill();
+                            return new RunOutcome(null, 1, false, false, ResourceUsage.UNKNOWN);
+                        }
+                    } else if (frame == ExecutorRunner.FRAME_EXIT) {
+                        int exitCode = input.readInt();
+                        long peakHeap = input.readLong();
+                        long userCodeNanos = input.readLong();
+                        long runNanos = System.nanoTime() - requestStart;
+                        ResourceUsage usage = measure(booted, peakHeap);
+                        // The program can forge this frame, keep its figures within what was measured here
+                        timings.record(Timings.Step.USER_CODE, Math.clamp(userCodeNanos, 0, runNanos));
+                        if (exitCode == -1) {
+                            exitCode = awaitExitCode();
+                        }
+                        return new RunOutcome(null, exitCode, false, false, withCgroup(usage, before));
+                    } else if (frame == -1) {
+                        throw new EOFException("Executor terminated");
+                    } else {
+                        return protocolViolation(before);
+                    }
+                }
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    return new RunOutcome(null, 1, true, false, withCgroup(ResourceUsage.UNKNOWN, before));
+                }
+                int exitCode = awaitExitCode();
+                return new RunOutcome(e.getMessage(), exitCode, false, false, withCgroup(ResourceUsage.UNKNOWN, before));
+            }
+        }
+
+        /**
+         * Peak RSS and the CPU time since the request from procfs, while the runner waits to be
+         * destroyed. The reported heap peak cannot exceed the resident set.
+         */
+        private ResourceUsage measure(ResourceUsage booted, long reportedPeakHeap) {
+            ResourceUsage now = ResourceUsage.sample(process.pid());
+            long peakRss = now.peakRssBytes();
+            return new ResourceUsage(peakRss,
+                    cpuSince(booted.userCpuNanos(), now.userCpuNanos()),
+                    cpuSince(booted.systemCpuNanos(), now.systemCpuNanos()),
+                    peakRss < 0 || reportedPeakHeap < 0 ? -1 : Math.min(reportedPeakHeap, peakRss));
+        }
+
+        private static long cpuSince(long before, long now) {
+            return before < 0 || now < 0 ? -1 : now - before;
+        }
+
+        /**
+         * The executor sent something the protocol does not allow, most likely the program writing
+         * to the raw output descriptor. Nothing more it sends can be trusted.
+         */
+        private RunOutcome protocolViolation(CgroupManager.Snapshot before) {
+            kill();
+            return new RunOutcome("Executor protocol violation", 1, false, false,
+                    withCgroup(ResourceUsage.UNKNOWN, before));
+        }
+
+        private ResourceUsage withCgroup(ResourceUsage usage, CgroupManager.Snapshot before) {
+            return cgroup == null ? usage : usage.withCgroup(before, cgroup.snapshot());
+        }
+
+        private int awaitExitCode() {
+            try {
+                if (process.waitFor(1, TimeUnit.SECONDS)) {
+                    return process.exitValue();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }
+
+        private void kill() {
+            ExecutionManager.destroyTree(process);
+            if (cgroup != null) {
+                cgroup.kill();
+            }
+        }
+
+        void destroy() {
+            kill();
+            if (cgroup != null) {
+                cgroup.removeAfter(process);
+            }
+        }
+    }
+
+    /**
+     * @param launchFailed whether no executor JVM could be started for the run
+     */
+    public record RunOutcome(String failure, int exitCode, boolean timedOut, boolean launchFailed,
+                             ResourceUsage usage) {}
+}
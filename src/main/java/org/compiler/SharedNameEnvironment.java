@@ -0,0 +1,151 @@
+package org.compiler;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Read-only name environment over the JDK classes and the approved libraries, indexed once at
+ * startup and shared by all concurrent compilations. Type lookups are a map lookup; class file
+ * bytes are read on first use and kept for the lifetime of the process.
+ */
+@ApplicationScoped
+public class SharedNameEnvironment implements INameEnvironment {
+
+    @ConfigProperty(name = "compiler.classpath.libraries")
+    Optional<List<String>> libraries;
+
+    private volatile Index index;
+    private final Map<String, byte[]> classBytes = new ConcurrentHashMap<>(1_024);
+    private final List<FileSystem> archives = new ArrayList<>();
+
+    void onStart(@Observes StartupEvent event) {
+        var building = new Index(new HashMap<>(32_768), new HashSet<>(2_048));
+        // Use extracted JDK classes when provided, otherwise the running JDK image
+        String jdkClasses = System.getenv("JDK_CLASSES");
+        if (jdkClasses != null && !jdkClasses.isEmpty()) {
+            indexRoot(building, Path.of(jdkClasses));
+        } else {
+            indexJrt(building);
+        }
+        for (Path library : libraryPaths()) {
+            indexLibrary(building, library);
+        }
+        index = building;
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        for (FileSystem archive : archives) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                // Ignore cleanup errors
+            }
+        }
+    }
+
+    public List<Path> libraryPaths() {
+        return libraries.orElse(List.of()).stream().map(Path::of).toList();
+    }
+
+    @Override
+    public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+        return findType(new String(CharOperation.concatWith(compoundTypeName, '/')));
+    }
+
+    @Override
+    public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+        return findType(new String(CharOperation.concatWith(packageName, typeName, '/')));
+    }
+
+    @Override
+    public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+        if (parentPackageName == null || parentPackageName.length == 0) {
+            return index.packages().contains(new String(packageName));
+        }
+        return index.packages().contains(new String(CharOperation.concatWith(parentPackageName, packageName, '/')));
+    }
+
+    @Override
+    public void cleanup() {
+        // Shared across compilations, nothing to release per compilation
+    }
+
+    private NameEnvironmentAnswer findType(String binaryName) {
+        Path root = index.classRoots().get(binaryName);
+        if (root == null) {
+            return null;
+        }
+        byte[] bytes = classBytes.computeIfAbsent(binaryName, name -> readClass(root, name));
+        try {
+            return new NameEnvironmentAnswer(new ClassFileReader(bytes, (binaryName + ".class").toCharArray()), null);
+        } catch (ClassFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readClass(Path root, String binaryName) {
+        try {
+            return Files.readAllBytes(root.resolve(binaryName + ".class"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void indexJrt(Index building) {
+        Path modules = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules");
+        try (Stream<Path> roots = Files.list(modules)) {
+            roots.forEach(root -> indexRoot(building, root));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void indexLibrary(Index building, Path library) {
+        if (Files.isDirectory(library)) {
+            indexRoot(building, library);
+            return;
+        }
+        try {
+            FileSystem archive = FileSystems.newFileSystem(library);
+            archives.add(archive);
+            indexRoot(building, archive.getPath("/"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void indexRoot(Index building, Path root) {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.forEach(file -> {
+                String relative = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                if (Files.isDirectory(file)) {
+                    if (!relative.isEmpty() && !relative.startsWith("META-INF")) {
+                        building.packages().add(relative);
+                    }
+                } else if (relative.endsWith(".class") && !relative.endsWith("module-info.class")) {
+                    building.classRoots().putIfAbsent(relative.substring(0, relative.length() - ".class".length()), root);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Index(Map<String, Path> classRoots, Set<String> packages) {}
+}
@@ -0,0 +1,73 @@
+package org.compiler;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the work and every caller
+ * that arrives while it is in flight waits for the same result instead of repeating it.
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public V run(K key, Supplier<V> work) {
+        var call = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            V result = work.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Asynchronous form of {@link #run}: the first caller starts the work, later callers for the
+     * same key get its future until it completes.
+     */
+    public CompletableFuture<V> submit(K key, Supplier<CompletableFuture<V>> work) {
+        var call = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<V> started;
+        try {
+            started = work.get();
+        } catch (RuntimeException | Error e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            inFlight.remove(key, call);
+            if (error != null) {
+                call.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                call.complete(result);
+            }
+        });
+        return call;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
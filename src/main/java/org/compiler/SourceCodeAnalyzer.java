@@ -2,6 +2,13 @@ package org.compiler;
 
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 @ApplicationScoped
@@ -13,9 +20,17 @@ public class SourceCodeAnalyzer {
     private static final Pattern CLASS_NAME_PATTERN =
             Pattern.compile("(?m)^\\s*(?:public\\s+)?class\\s+(\\w+)");
     
+    // Sources of output that can differ between two runs of the same program
+    private static final Pattern NONDETERMINISM_PATTERN =
+            Pattern.compile("\\b(?:Random|SecureRandom|ThreadLocalRandom|random|currentTimeMillis|nanoTime|now|UUID|" +
+                    "Thread|Executor\\w*|ForkJoin\\w*|parallel\\w*|hashCode|identityHashCode|getenv|getProperty|" +
+                    "Runtime|System\\.in|Scanner|Console|File\\w*|Files|Socket|URL|HttpClient)\\b");
+
     private static final Pattern MAIN_METHOD_PATTERN =
             Pattern.compile("public\\s+static\\s+void\\s+main\\s*\\(\\s*String\\s*\\[\\s*\\]");
 
+    private static final int HASH_BUFFER_SIZE = 4096;
+
     public String extractClassName(String sourceCode) {
         if (sourceCode == null || sourceCode.isBlank()) {
             return null;
@@ -40,6 +55,14 @@ public class SourceCodeAnalyzer {
                MAIN_METHOD_PATTERN.matcher(sourceCode).find();
     }
 
+    /**
+     * Conservative check used before sharing one execution between identical submissions: the
+     * program must not read input, clocks, randomness, threads, identity hashes or the environment.
+     */
+    public boolean isDeterministic(String sourceCode) {
+        return sourceCode != null && !NONDETERMINISM_PATTERN.matcher(sourceCode).find();
+    }
+
     public ValidationResult validate(String sourceCode) {
         if (sourceCode == null || sourceCode.isBlank()) {
             return new ValidationResult(false, "Empty source");
@@ -53,9 +76,68 @@ public class SourceCodeAnalyzer {
         return new ValidationResult(true, "Valid");
     }
 
-    public String generateHash(String sourceCode) {
-        return Integer.toHexString(sourceCode.hashCode());
+    /**
+     * Content-addressed cache key: SHA-256 over the source, the additional files in name order and
+     * the compiler options (which carry the target level). Every string is length-prefixed and its
+     * UTF-16 code units go straight into the digest through a small reusable buffer, so two
+     * different strings never feed the same bytes, unpaired surrogates included.
+     */
+    public String generateHash(CodeSnippet snippet, Map<String, String> compilerOptions) {
+        var hasher = new Hasher();
+        hasher.update(snippet.sourceCode);
+        hasher.update(new TreeMap<>(Objects.requireNonNullElse(snippet.additionalFiles, Map.<String, String>of())));
+        hasher.update(new TreeMap<>(compilerOptions));
+        return HexFormat.of().formatHex(hasher.digest.digest());
     }
     
     public record ValidationResult(boolean valid, String message) {}
+
+    private static final class Hasher {
+
+        private final MessageDigest digest;
+        private final ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void update(Map<String, String> entries) {
+            updateLength(entries.size());
+            entries.forEach((key, value) -> {
+                update(key);
+                update(value);
+            });
+        }
+
+        void update(String value) {
+            if (value == null) {
+                updateLength(-1);
+                return;
+            }
+            updateLength(value.length());
+            int offset = 0;
+            while (offset < value.length()) {
+                int count = Math.min(buffer.remaining() / Character.BYTES, value.length() - offset);
+                buffer.asCharBuffer().put(value, offset, offset + count);
+                buffer.position(buffer.position() + count * Character.BYTES);
+                offset += count;
+                drain();
+            }
+        }
+
+        private void updateLength(int length) {
+            buffer.putInt(length);
+            drain();
+        }
+
+        private void drain() {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+    }
 }
@@ -0,0 +1,80 @@
+package org.compiler;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Nanosecond durations of the pipeline steps one submission went through. Steps that did not
+ * happen, such as compilation on a cache hit, are left out; a run on a warm executor reports a
+ * JVM startup of zero. A submission that waited for an identical one already in flight instead of
+ * compiling or running itself has no steps for that work, its wait only shows in the
+ * {@code total}. Serialized as an object keyed by step name with an overall {@code total}.
+ */
+public final class Timings {
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Step, Long> steps = new EnumMap<>(Step.class);
+    private long totalNanos = -1;
+
+    public synchronized void record(Step step, long nanos) {
+        steps.put(step, nanos);
+    }
+
+    public void recordSince(Step step, long startNanos) {
+        record(step, System.nanoTime() - startNanos);
+    }
+
+    public <T> T time(Step step, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            recordSince(step, start);
+        }
+    }
+
+    public synchronized void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    public synchronized Map<Step, Long> steps() {
+        return new EnumMap<>(steps);
+    }
+
+    @JsonValue
+    synchronized Map<String, Long> toJson() {
+        var json = new LinkedHashMap<String, Long>();
+        steps.forEach((step, nanos) -> json.put(step.jsonName(), nanos));
+        if (totalNanos >= 0) {
+            json.put("total", totalNanos);
+        }
+        return json;
+    }
+
+    /**
+     * Pipeline steps in the order a submission passes through them. {@link #JVM_STARTUP} is the
+     * time until the executor JVM could run the program, {@link #USER_CODE} the time the program
+     * itself ran as measured inside that JVM; both are part of {@link #RUN} in fork mode.
+     */
+    public enum Step {
+        VALIDATE, CACHE_LOOKUP, COMPILE_QUEUE, COMPILE, EXECUTE_QUEUE, TEMP_DIR, WRITE_CLASSES, SPAWN,
+        JVM_STARTUP, RUN, USER_CODE, OUTPUT_DRAIN, CLEANUP;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        String jsonName() {
+            var name = new StringBuilder();
+            for (String word : tag().split("_")) {
+                name.append(name.isEmpty() ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+            }
+            return name.toString();
+        }
+    }
+}
@@ -1373,7 +1373,7 @@ function compileAndRun() {
                 animateValue('memory-usage', 0, Math.round(data.peakMemoryBytes / 1024), 800);
 
                 const execPercentage = Math.min((data.executionTimeMs / 1000) * 100, 100);
-                const memPercentage = Math.min(((data.peakMemoryBytes / 1024) / 500) * 100, 100);
+                const memPercentage = Math.min((data.peakMemoryBytes / (256 * 1024 * 1024)) * 100, 100);
 
                 setProgress('execution-progress', execPercentage);
                 setProgress('memory-progress', memPercentage);